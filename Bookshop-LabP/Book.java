@@ -1,12 +1,17 @@
 package project;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
 /**
  * @author Madalena Machado fc59858
  */
 
 public class Book {
+	private static final AtomicIntegerFieldUpdater<Book> QUANTITY =
+			AtomicIntegerFieldUpdater.newUpdater(Book.class, "quantity");
+	
 	private String title;
 	private String author;
-	private int quantity;
+	private volatile int quantity;
 	private double price;
 	private double tax;
 	private String ISBN;
@@ -85,4 +90,20 @@ public class Book {
 	public void setQuantity(int quantidade) {
 		this.quantity = quantidade;
 	}
+	
+	/**
+	 * Takes one copy of the book from stock, atomically, so that registers selling at
+	 * the same time never take the quantity below zero
+	 * @return true if a copy was taken, false if the book is out of stock
+	 */
+	public boolean tryTake() {
+		int current = quantity;
+		while(current > 0) {
+			if(QUANTITY.compareAndSet(this, current, current - 1)) {
+				return true;
+			}
+			current = quantity;
+		}
+		return false;
+	}
 }
@@ -1,8 +1,32 @@
 package project;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.FileNotFoundException;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
-import java.io.File;
-import java.util.Scanner;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
 
 /**
  * @author Madalena Machado fc59858
@@ -10,59 +34,330 @@ import java.util.Scanner;
 
 public class Bookshop {
 	
+	private static final int INITIAL_SHELF = 1024;
+	private static final int LINES_PER_TASK = 1024;
+	private static final int REPORT_CHUNK = 4096;
+	// title, ISBN, author, quantity, price and tax
+	static final int CATALOG_FIELDS = 6;
+	// every catalog and purchases file is read and written in this charset
+	static final Charset CHARSET = StandardCharsets.UTF_8;
+	// title or ISBN, and buyer
+	private static final int PURCHASE_FIELDS = 2;
+	
 	private Book [] bookshelf; 
  	private int numberOfBooks;
 	private int availableBooks;
-	private double totalSales;
-	private double totalProfit;
+	// money is kept in micros, see Money
+	private final LongAdder totalSales = new LongAdder();
+	private final LongAdder totalProfit = new LongAdder();
+	// built on first use by a bookshop loaded from a snapshot; isbnIndex is published
+	// by the write of titleIndex
+	private volatile HashMap<String, Integer> titleIndex;
+	private HashMap<String, Integer> isbnIndex;
+	private int [] priceOrder;
+	private double [] sortedPrices;
+	private long [] priceCents;
+	private int [] taxBasisPoints;
+	private int [] authorOrder;
+	private TreeMap<String, Integer> authorIndex;
+	private int [] lowerAuthorOrder;
+	private TreeMap<String, Integer> lowerAuthorIndex;
+	private double rowsPerSecond;
 	
 	/**
 	 * Creates a library object that represents a file specified by its name and a 
-	 * certain number of books
+	 * certain number of books. The file is read once, through a buffered reader, and
+	 * the bookshelf grows as the books are read, in UTF-8 as updateStock writes it.
+	 * Fields may be quoted to hold commas.
+	 * Books by the same author share the author String.
+	 * If the file has fewer books than asked for, the bookshop holds the ones it has
 	 * @param fileName         the file name
 	 * @param numberOfBooks    the number of books
 	 * @requires {@code numberOfBooks > 0}
 	 * @throws FileNotFoundException
+	 * @throws IllegalArgumentException if a price or tax has more than two decimals
 	 */
 	public Bookshop(String fileName, int numberOfBooks) throws FileNotFoundException {
-		File file = new File(fileName);
-		Scanner sc = new Scanner (file);
-		sc.nextLine();
+		long start = System.nanoTime();
+		this.bookshelf = new Book [Math.min(numberOfBooks, INITIAL_SHELF)];
+		int i = 0;
+		// books by the same author share one String
+		HashMap<String, String> authors = new HashMap<String, String>();
 		
-		this.numberOfBooks = numberOfBooks;
+		try(BufferedReader reader = Files.newBufferedReader(Paths.get(fileName), CHARSET)) {
+			CsvReader csv = new CsvReader(reader);
+			csv.nextRecord();
+			while(i < numberOfBooks && csv.nextRecord()) {
+				if(csv.isEmptyRecord()) {
+					continue;
+				}
+				csv.requireFields(CATALOG_FIELDS);
+				String title = csv.getField(0);
+				String ISBN = csv.getField(1);
+				String author = csv.getField(2);
+				String known = authors.putIfAbsent(author, author);
+				if(known != null) {
+					author = known;
+				}
+				int quantity = Integer.parseInt(csv.getField(3).trim());
+				double price = Double.parseDouble(csv.getField(4));
+				String taxString = csv.getField(5);
+				if(taxString.endsWith("%")) {
+					taxString = taxString.substring(0, taxString.length()-1);
+				}
+				double tax = Double.parseDouble(taxString);
+				if(i == bookshelf.length) {
+					this.bookshelf = Arrays.copyOf(bookshelf, Math.min(numberOfBooks, 2 * i));
+				}
+				this.bookshelf[i] = new Book(title, author, quantity, price, tax, ISBN);
+				i++;
+			}
+		} catch (NoSuchFileException e) {
+			throw new FileNotFoundException(fileName);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 		
-		int lines = 0;
-		while(sc.hasNextLine()) {
-			lines++;
-			sc.nextLine();
+		if(i < bookshelf.length) {
+			this.bookshelf = Arrays.copyOf(bookshelf, i);
 		}
-		if(numberOfBooks > lines) {
-			numberOfBooks = lines;
+		this.numberOfBooks = i;
+		long elapsed = System.nanoTime() - start;
+		this.rowsPerSecond = elapsed == 0 ? 0 : i * 1e9 / elapsed;
+		indexBooks(null, null, null, null, null);
+		keyIndexes();
+	}
+	
+	/**
+	 * Creates a bookshop holding the given books, with the prices in cents, the taxes
+	 * in basis points and the index orders of a snapshot. The hash indexes from title
+	 * and from ISBN are built on first use
+	 * @param snapshot   the snapshot contents
+	 */
+	private Bookshop(CatalogSnapshot snapshot) {
+		this.bookshelf = snapshot.books;
+		this.numberOfBooks = snapshot.books.length;
+		indexBooks(snapshot.priceCents, snapshot.taxBasisPoints, snapshot.priceOrder, snapshot.authorOrder,
+				snapshot.lowerAuthorOrder);
+	}
+	
+	/**
+	 * Creates a bookshop from a binary snapshot written by writeSnapshot. Nothing has
+	 * to be parsed, converted or sorted, so this is much faster than reading the CSV file
+	 * @param fileName   the snapshot file name
+	 * @return the bookshop in the snapshot
+	 * @throws FileNotFoundException
+	 * @throws IOException if the file cannot be read or is not a valid snapshot
+	 */
+	public static Bookshop fromSnapshot(String fileName) throws IOException {
+		long start = System.nanoTime();
+		CatalogSnapshot snapshot = CatalogSnapshot.read(fileName);
+		Bookshop shop = new Bookshop(snapshot);
+		long elapsed = System.nanoTime() - start;
+		shop.rowsPerSecond = elapsed == 0 ? 0 : shop.numberOfBooks * 1e9 / elapsed;
+		return shop;
+	}
+	
+	/**
+	 * Saves the books, with their current stock, and the index orders on a binary
+	 * snapshot file, to be loaded with fromSnapshot
+	 * @param fileName  output file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void writeSnapshot(String fileName) throws IOException {
+		CatalogSnapshot.write(fileName, bookshelf, priceCents, taxBasisPoints, priceOrder, authorOrder,
+				lowerAuthorOrder);
+	}
+	
+	/**
+	 * Returns how fast the file given to the constructor was loaded
+	 * 
+	 * @return the number of books read per second
+	 */
+	public double getRowsPerSecond() {
+		return this.rowsPerSecond;
+	}
+	
+	/**
+	 * Returns the hash index from title to the position of the book in the bookshelf,
+	 * building it and the one from ISBN if they were not built yet. When several books
+	 * share a key, the first one is kept, which is the one a scan of the bookshelf
+	 * would find
+	 * @return the title index
+	 */
+	private synchronized HashMap<String, Integer> keyIndexes() {
+		if(titleIndex == null) {
+			int books = bookshelf.length;
+			HashMap<String, Integer> titles = new HashMap<String, Integer>(books * 4 / 3 + 1);
+			HashMap<String, Integer> isbns = new HashMap<String, Integer>(books * 4 / 3 + 1);
+			for(int i = 0; i < books; i++) {
+				titles.putIfAbsent(bookshelf[i].getTitle(), i);
+				isbns.putIfAbsent(bookshelf[i].getISBN(), i);
+			}
+			this.isbnIndex = isbns;
+			this.titleIndex = titles;
+		}
+		return titleIndex;
+	}
+	
+	/**
+	 * Builds the price and author indexes. Prices, taxes and orders given by a snapshot
+	 * are used as they are; missing ones are converted or sorted
+	 * @param priceCents         price of each book in cents, or null
+	 * @param taxBasisPoints     tax of each book in basis points, or null
+	 * @param priceOrder         positions sorted by price, or null
+	 * @param authorOrder        positions sorted by author, or null
+	 * @param lowerAuthorOrder   positions sorted by lower case author, or null
+	 */
+	private void indexBooks(long [] priceCents, int [] taxBasisPoints, int [] priceOrder, int [] authorOrder,
+			int [] lowerAuthorOrder) {
+		int books = Math.min(numberOfBooks, bookshelf.length);
+		if(priceCents == null) {
+			priceCents = new long [books];
+			taxBasisPoints = new int [books];
+			for(int i = 0; i < books; i++) {
+				priceCents[i] = Money.cents(bookshelf[i].getPrice());
+				taxBasisPoints[i] = Money.basisPoints(bookshelf[i].getTax());
+			}
 		}
-		sc.close();
+		this.priceCents = priceCents;
+		this.taxBasisPoints = taxBasisPoints;
 		
-		Scanner scan = new Scanner (file);
-		scan.nextLine();
-		this.bookshelf = new Book [numberOfBooks];
-		this.totalSales = 0;
-		this.totalProfit = 0;
-		int i = 0;
+		// prices never change, so the price order is kept for the life of the bookshop
+		if(priceOrder == null) {
+			Integer [] order = new Integer [books];
+			for(int i = 0; i < books; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> Double.compare(bookshelf[a].getPrice(), bookshelf[b].getPrice()));
+			priceOrder = new int [books];
+			for(int k = 0; k < books; k++) {
+				priceOrder[k] = order[k];
+			}
+		}
+		this.priceOrder = priceOrder;
+		this.sortedPrices = new double [books];
+		for(int k = 0; k < books; k++) {
+			sortedPrices[k] = priceCents[priceOrder[k]] / 100.0;
+		}
 		
-		while(scan.hasNextLine() && i < this.numberOfBooks) {
-			String [] data = scan.nextLine().split(",");
-	    	String title = data[0];
-	    	String ISBN = data[1];
-	    	String author = data[2];
-	    	String quantityString = data[3];
-	    	int quantity = Integer.parseInt(quantityString);
-	    	String priceString = data[4];
-	    	double price = Double.parseDouble(priceString);
-	    	String taxString = data[5].substring(0, data[5].length()-1);
-	    	double tax = Double.parseDouble(taxString);
-			this.bookshelf[i] = new Book(title, author, quantity, price, tax, ISBN);
-	    	i++;
+		this.authorIndex = new TreeMap<String, Integer>();
+		this.authorOrder = sortByKey(i -> bookshelf[i].getAuthor(), authorIndex, authorOrder);
+		// books by one author share the String, so it is lower-cased once per run of them
+		String [] last = new String [2];
+		this.lowerAuthorIndex = new TreeMap<String, Integer>();
+		this.lowerAuthorOrder = sortByKey(i -> {
+			String author = bookshelf[i].getAuthor();
+			if(author != last[0]) {
+				last[0] = author;
+				last[1] = author.toLowerCase(Locale.ROOT);
+			}
+			return last[1];
+		}, lowerAuthorIndex, lowerAuthorOrder);
+	}
+	
+	/**
+	 * Sorts the bookshelf positions by a key, keeping shelf order among books with the
+	 * same key, and records where the books of each key start
+	 * @param key      key of the book in each position
+	 * @param starts   map to be filled with the first place of each key in the order
+	 * @param sorted   positions already sorted by key, or null
+	 * @return the positions sorted by key
+	 */
+	private int [] sortByKey(IntFunction<String> key, TreeMap<String, Integer> starts, int [] sorted) {
+		int books = bookshelf.length;
+		String [] keys = new String [books];
+		int [] positions = sorted;
+		if(positions != null) {
+			// in sorted order, so that equal keys are made one after the other
+			for(int position : positions) {
+				keys[position] = key.apply(position);
+			}
 		}
-		scan.close();
+		else {
+			for(int i = 0; i < books; i++) {
+				keys[i] = key.apply(i);
+			}
+			Integer [] order = new Integer [books];
+			for(int i = 0; i < books; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, (a, b) -> keys[a].compareTo(keys[b]));
+			positions = new int [books];
+			for(int k = 0; k < books; k++) {
+				positions[k] = order[k];
+			}
+		}
+		for(int k = 0; k < books; k++) {
+			if(k == 0 || !keys[positions[k]].equals(keys[positions[k - 1]])) {
+				starts.put(keys[positions[k]], k);
+			}
+		}
+		return positions;
+	}
+	
+	/**
+	 * Returns the books whose key is at least from and lower than to
+	 * @param order    positions sorted by key
+	 * @param starts   first place of each key in the order
+	 * @param from     lowest key, included
+	 * @param to       highest key, excluded
+	 * @return a read-only view of the books, in key order
+	 */
+	private List<Book> keyRange(int [] order, TreeMap<String, Integer> starts, String from, String to) {
+		Map.Entry<String, Integer> first = starts.ceilingEntry(from);
+		Map.Entry<String, Integer> last = starts.ceilingEntry(to);
+		int begin = first == null ? order.length : first.getValue();
+		int end = last == null ? order.length : last.getValue();
+		return new ShelfView(order, begin, Math.max(begin, end));
+	}
+	
+	/**
+	 * Returns the first place in the price order whose price is not lower than the given one
+	 * @param price   price to be searched
+	 * @return the number of books cheaper than price
+	 */
+	private int cheaperThan(double price) {
+		int low = 0;
+		int high = sortedPrices.length;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(sortedPrices[middle] < price) {
+				low = middle + 1;
+			}
+			else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+	
+	/**
+	 * Returns the position in the bookshelf of the first book with the given title or ISBN
+	 * @param titleOrISBN  book title or ISBN
+	 * @return the book position, or -1 if there is no such book
+	 */
+	private int indexOf(String titleOrISBN) {
+		HashMap<String, Integer> titles = titleIndex;
+		if(titles == null) {
+			titles = keyIndexes();
+		}
+		Integer byTitle = titles.get(titleOrISBN);
+		Integer byISBN = isbnIndex.get(titleOrISBN);
+		if(byTitle == null) {
+			return byISBN == null ? -1 : byISBN;
+		}
+		return byISBN == null ? byTitle : Math.min(byTitle, byISBN);
+	}
+	
+	/**
+	 * Returns the first book with the given title or ISBN
+	 * @param titleOrISBN  book title or ISBN
+	 * @return the book found, or null if there is no such book
+	 */
+	public Book findBook(String titleOrISBN) {
+		int i = indexOf(titleOrISBN);
+		return i < 0 ? null : this.bookshelf[i];
 	}
 	
 	/**
@@ -106,7 +401,16 @@ public class Bookshop {
 	 * @return total of sales 
 	 */
 	public double getTotalRevenue() {
-		return this.totalSales;
+		return Money.toDouble(this.totalSales.sum());
+	}
+	
+	/**
+	 * Returns the exact total daily revenue
+	 * 
+	 * @return total of sales, in micros
+	 */
+	public long getTotalRevenueMicros() {
+		return this.totalSales.sum();
 	}
 	
 	/**
@@ -115,7 +419,16 @@ public class Bookshop {
 	 * @return total of money profited
 	 */
 	public double getTotalProfit() {
-		return this.totalProfit;
+		return Money.toDouble(this.totalProfit.sum());
+	}
+	
+	/**
+	 * Returns the exact total daily profit
+	 * 
+	 * @return total of money profited, in micros
+	 */
+	public long getTotalProfitMicros() {
+		return this.totalProfit.sum();
 	}
 	
 	/**
@@ -125,18 +438,45 @@ public class Bookshop {
 	 */
 	public String filterByAuthor(String author) {
 		StringBuilder sb = new StringBuilder();
-		for(int i = 0; i < bookshelf.length; i++) {
-			if(bookshelf[i].getAuthor().equals(author)) {
-				sb.append("Title:");
-				sb.append(bookshelf[i].getTitle());
-				sb.append(",Price:$"); 
-				sb.append(bookshelf[i].getPrice());
-				sb.append(System.lineSeparator());
-			}
+		for(Book book : booksByAuthor(author)) {
+			sb.append("Title:");
+			sb.append(book.getTitle());
+			sb.append(",Price:$"); 
+			sb.append(book.getPrice());
+			sb.append(System.lineSeparator());
 		}
 		return sb.toString();
 	}
 	
+	/**
+	 * Returns the books written by given author, in bookshelf order. The list is a
+	 * view over the author index: books are only read as it is traversed, and a page
+	 * is taken with subList
+	 * @param author   book author
+	 * @return a read-only view of the books written by said author
+	 */
+	public List<Book> booksByAuthor(String author) {
+		return booksByAuthor(author, false, false);
+	}
+	
+	/**
+	 * Returns the books whose author matches the one given, ordered by author and then
+	 * by bookshelf position. The list is a view over the author index: books are only
+	 * read as it is traversed, and a page is taken with subList
+	 * @param author       book author, or the start of it
+	 * @param ignoreCase   true to compare authors without regard to case
+	 * @param prefix       true to match every author that starts with the given one
+	 * @return a read-only view of the books whose author matches
+	 */
+	public List<Book> booksByAuthor(String author, boolean ignoreCase, boolean prefix) {
+		String key = ignoreCase ? author.toLowerCase(Locale.ROOT) : author;
+		String end = prefix ? key + Character.MAX_VALUE : key + Character.MIN_VALUE;
+		if(ignoreCase) {
+			return keyRange(lowerAuthorOrder, lowerAuthorIndex, key, end);
+		}
+		return keyRange(authorOrder, authorIndex, key, end);
+	}
+	
 	/**
 	 * Represents the books with price lower than the one given
 	 * @param price   book price to be filtered
@@ -144,18 +484,48 @@ public class Bookshop {
 	 */
 	public String filterByPrice(double price) {
 		StringBuilder sb = new StringBuilder();
-		for(int i = 0; i < numberOfBooks; i++) {
-			if(bookshelf[i].getPrice() < price) {
-				sb.append("Title:");
-				sb.append(bookshelf[i].getTitle());
-				sb.append(",Author:"); 
-				sb.append(bookshelf[i].getAuthor());
-				sb.append(System.lineSeparator());
-			}
+		int [] positions = Arrays.copyOf(priceOrder, cheaperThan(price));
+		Arrays.sort(positions);
+		for(int i : positions) {
+			sb.append("Title:");
+			sb.append(bookshelf[i].getTitle());
+			sb.append(",Author:"); 
+			sb.append(bookshelf[i].getAuthor());
+			sb.append(System.lineSeparator());
 		}
 		return sb.toString();
 	}
 	
+	/**
+	 * Returns the books with price lower than the one given, cheapest first
+	 * @param price   book price to be filtered
+	 * @return a read-only view of the books with a lower price than the one given
+	 */
+	public List<Book> booksUnder(double price) {
+		return new ShelfView(priceOrder, 0, cheaperThan(price));
+	}
+	
+	/**
+	 * Returns the books with price at least min and lower than max, cheapest first
+	 * @param min   lowest price, included
+	 * @param max   highest price, excluded
+	 * @return a read-only view of the books in the price range
+	 */
+	public List<Book> booksBetween(double min, double max) {
+		int from = cheaperThan(min);
+		return new ShelfView(priceOrder, from, Math.max(from, cheaperThan(max)));
+	}
+	
+	/**
+	 * Returns the k cheapest books, cheapest first
+	 * @param k   number of books
+	 * @return a read-only view of the k cheapest books, or of all of them if there are fewer
+	 * @requires {@code k >= 0}
+	 */
+	public List<Book> cheapest(int k) {
+		return new ShelfView(priceOrder, 0, Math.min(k, priceOrder.length));
+	}
+	
 	/**
 	 * Reads CSV file identified by filename and returns a string with the info about
 	 * said purchases (successful, book out of stock or book not found)
@@ -166,65 +536,232 @@ public class Bookshop {
 	 */
 	public String readPurchase(String fileName) throws FileNotFoundException {
 		StringBuilder sb = new StringBuilder();
-		File file = new File(fileName);
-		Scanner scan = new Scanner (file);
-		scan.nextLine();
-		double dailySales = 0;
-		double dailyProfit = 0;
-    	while(scan.hasNextLine()) {
-    		String [] purchase = scan.nextLine().split(",");
-        	String title = purchase[0];
-        	String buyer = purchase[1];
-        	int i = 0;
-        	boolean exists = false;
-    		while(i < numberOfBooks && !exists) {
-    			boolean isEqual = bookshelf[i].getTitle().equals(title) ||(bookshelf[i].getISBN()).equals(title);
-    			if(isEqual) {
-    				
-    				if(bookshelf[i].getQuantity() > 0) {
-    					int quant = bookshelf[i].getQuantity();
-    					purchaseSuccessful(i, purchase, sb);
-    					dailySales += calculateSales(i);
-    					dailyProfit += calculateProfit(i);
-    	    			bookshelf[i].setQuantity(quant-1);
-    	    		}
-    	    		else {
-    					bookOutOfStock(i, purchase, sb);
-    	    		}
-					exists = true;
-    			}
-    		
-    			if(i==numberOfBooks-1 && !exists) {
-					bookNotFound(i, purchase, sb);
-    			}
-    		i++;
-    		}
-    	}
-    	sb.append(String.format("Total: $%.2f ",dailySales));
-		sb.append((String.format("[$%.2f",dailyProfit)+"]"));
-		scan.close();
+		try {
+			readPurchase(fileName, sb);
+		} catch (FileNotFoundException e) {
+			throw e;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 		return sb.toString();
 	}
+	
+	/**
+	 * Reads CSV file identified by filename and writes the info about said purchases
+	 * to the given output as each line is processed, followed by the totals. Only one
+	 * line is held in memory at a time. The output is flushed once, after the totals,
+	 * when it can be; to see each status as soon as it is known, pass an output that
+	 * flushes itself, such as a PrintStream with automatic flushing. Fields may be
+	 * quoted to hold commas, and lines that are empty or have no buyer are skipped
+	 * 
+	 * @param fileName  input file name
+	 * @param out       output of the purchases status, such as a Writer
+	 * @throws FileNotFoundException
+	 * @throws IOException if the input cannot be read or the output cannot be written
+	 */
+	public void readPurchase(String fileName, Appendable out) throws IOException {
+		try(BufferedReader reader = Files.newBufferedReader(Paths.get(fileName), CHARSET)) {
+			CsvReader csv = new CsvReader(reader);
+			csv.nextRecord();
+			StringBuilder sb = new StringBuilder();
+			long dailySales = 0;
+			long dailyProfit = 0;
+			while(csv.nextRecord()) {
+				if(csv.getNumberOfFields() < PURCHASE_FIELDS) {
+					continue;
+				}
+				String [] purchase = csv.getFields();
+				sb.setLength(0);
+				int i = sell(purchase, sb);
+				if(i >= 0) {
+					dailySales += calculateSales(i);
+					dailyProfit += calculateProfit(i);
+				}
+				out.append(sb);
+			}
+			out.append("Total: $" + Money.format(dailySales) + " ");
+			out.append("[$" + Money.format(dailyProfit) + "]");
+			flush(out);
+		} catch (NoSuchFileException e) {
+			throw new FileNotFoundException(fileName);
+		}
+	}
+	
 	/**
-	 * Calculates the daily profit	
+	 * Processes a single purchase and returns its status, in the same format as the
+	 * lines of readPurchase. The stock and the totals are updated atomically, so
+	 * purchases may be made from several threads
+	 * @param titleOrISBN   title or ISBN of the book asked for
+	 * @param buyer         name of the buyer
+	 * @return the purchase status
+	 */
+	public String purchase(String titleOrISBN, String buyer) {
+		StringBuilder sb = new StringBuilder();
+		int i = sell(new String [] {titleOrISBN, buyer}, sb);
+		if(i >= 0) {
+			calculateSales(i);
+			calculateProfit(i);
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * Takes the book of a purchase from stock, if there is one, and appends the
+	 * status of the purchase
+	 * @param purchase purchase data in input file
+	 * @param sb       StringBuilder used to append
+	 * @return the book position in bookshelf if it was sold, -1 otherwise
+	 */
+	private int sell(String [] purchase, StringBuilder sb) {
+		int i = indexOf(purchase[0]);
+		if(i < 0) {
+			bookNotFound(i, purchase, sb);
+			return -1;
+		}
+		if(bookshelf[i].tryTake()) {
+			purchaseSuccessful(i, purchase, sb);
+			return i;
+		}
+		bookOutOfStock(i, purchase, sb);
+		return -1;
+	}
+	
+	/**
+	 * Flushes the given output, if it can be flushed
+	 * @param out   output of the purchases status
+	 * @throws IOException if the output cannot be written
+	 */
+	private static void flush(Appendable out) throws IOException {
+		if(out instanceof Flushable) {
+			((Flushable) out).flush();
+		}
+	}
+	
+	/**
+	 * Reads CSV file identified by filename and returns the same string as readPurchase,
+	 * but parses the purchases and takes the books from stock across the given pool.
+	 * The purchases of each book are applied in file order, so every status is the one
+	 * a sequential run would give, while different books are sold at the same time.
+	 * Stock is taken atomically, so several files can be processed at once. Lines are
+	 * read and skipped as readPurchase does
+	 * 
+	 * @param fileName  input file name
+	 * @param pool      threads used to process the purchases
+	 * @return the purchases status
+	 * @throws FileNotFoundException
+	 */
+	public String readPurchase(String fileName, ForkJoinPool pool) throws FileNotFoundException {
+		String [][] purchases = readRecords(fileName);
+		int n = purchases.length;
+		int [] positions = new int [n];
+		pool.invoke(new RangeTask(0, n, LINES_PER_TASK, line -> {
+			positions[line] = indexOf(purchases[line][0]);
+		}));
+		
+		// purchases grouped by book, in file order within each book
+		int [] first = new int [bookshelf.length + 1];
+		for(int line = 0; line < n; line++) {
+			if(positions[line] >= 0) {
+				first[positions[line] + 1]++;
+			}
+		}
+		for(int i = 0; i < bookshelf.length; i++) {
+			first[i + 1] += first[i];
+		}
+		int [] byBook = new int [first[bookshelf.length]];
+		int [] next = Arrays.copyOf(first, bookshelf.length);
+		for(int line = 0; line < n; line++) {
+			if(positions[line] >= 0) {
+				byBook[next[positions[line]]++] = line;
+			}
+		}
+		boolean [] sold = new boolean [n];
+		pool.invoke(new RangeTask(0, bookshelf.length, LINES_PER_TASK, i -> {
+			for(int k = first[i]; k < first[i + 1]; k++) {
+				sold[byBook[k]] = bookshelf[i].tryTake();
+			}
+		}));
+		
+		int chunks = (n + REPORT_CHUNK - 1) / REPORT_CHUNK;
+		StringBuilder [] parts = new StringBuilder [chunks];
+		pool.invoke(new RangeTask(0, chunks, 1, chunk -> {
+			StringBuilder part = new StringBuilder();
+			for(int line = chunk * REPORT_CHUNK; line < Math.min(n, (chunk + 1) * REPORT_CHUNK); line++) {
+				int i = positions[line];
+				if(i < 0) {
+					bookNotFound(i, purchases[line], part);
+				}
+				else if(sold[line]) {
+					purchaseSuccessful(i, purchases[line], part);
+				}
+				else {
+					bookOutOfStock(i, purchases[line], part);
+				}
+			}
+			parts[chunk] = part;
+		}));
+		
+		StringBuilder sb = new StringBuilder();
+		for(StringBuilder part : parts) {
+			sb.append(part);
+		}
+		long dailySales = 0;
+		long dailyProfit = 0;
+		for(int line = 0; line < n; line++) {
+			if(sold[line]) {
+				dailySales += calculateSales(positions[line]);
+				dailyProfit += calculateProfit(positions[line]);
+			}
+		}
+		sb.append("Total: $" + Money.format(dailySales) + " ");
+		sb.append("[$" + Money.format(dailyProfit) + "]");
+		return sb.toString();
+	}
+	
+	/**
+	 * Reads the records of a purchases file, without the header, empty lines and
+	 * lines with no buyer
+	 * @param fileName  input file name
+	 * @return the fields of each purchase
+	 * @throws FileNotFoundException
+	 */
+	private static String [][] readRecords(String fileName) throws FileNotFoundException {
+		List<String []> records = new ArrayList<String []>();
+		try(BufferedReader reader = Files.newBufferedReader(Paths.get(fileName), CHARSET)) {
+			CsvReader csv = new CsvReader(reader);
+			csv.nextRecord();
+			while(csv.nextRecord()) {
+				if(csv.getNumberOfFields() >= PURCHASE_FIELDS) {
+					records.add(csv.getFields());
+				}
+			}
+		} catch (NoSuchFileException e) {
+			throw new FileNotFoundException(fileName);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return records.toArray(new String [records.size()][]);
+	}
+	/**
+	 * Calculates the daily profit, exactly, from the price in cents and the tax in
+	 * basis points
 	 * @param i book position in bookshelf
-	 * @return daily profit calculated
+	 * @return daily profit calculated, in micros
 	 */
-	private double calculateProfit(int i) {
-		double perProf = 1 - (bookshelf[i].getTax())/100;
-		this.totalProfit += perProf * bookshelf[i].getPrice();
-		double dailyProfit = perProf * bookshelf[i].getPrice();
+	private long calculateProfit(int i) {
+		long dailyProfit = Money.netOfTax(priceCents[i], taxBasisPoints[i]);
+		this.totalProfit.add(dailyProfit);
 		
 		return dailyProfit;
 	}
 	/**
 	 * Calculates the total amount of sales
 	 * @param i book position in bookshelf
-	 * @return  total sales calculated
+	 * @return  total sales calculated, in micros
 	 */
-	private double calculateSales(int i) {
-		totalSales += bookshelf[i].getPrice();
-		double dailySales = bookshelf[i].getPrice();
+	private long calculateSales(int i) {
+		long dailySales = Money.fromCents(priceCents[i]);
+		totalSales.add(dailySales);
 		
 		return dailySales;
 		
@@ -275,22 +812,153 @@ public class Bookshop {
 	}
 	
 	/**
-	 * Updates the stock to represent the daily sales and saves it on a CSV file
+	 * Updates the stock to represent the daily sales and saves it on a CSV file.
+	 * The file is written in UTF-8, and text fields holding commas, quotes or line
+	 * breaks are quoted.
+	 * To save only the quantities that changed, use a StockLog; to load faster, write
+	 * a snapshot as well
 	 * @param fileName  output file
 	 * @throws FileNotFoundException
 	 */
 	public void updateStock(String fileName) throws FileNotFoundException {
-		PrintWriter write = new PrintWriter(fileName);
+		PrintWriter write = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(fileName), CHARSET)));
+		writeStock(write, i -> bookshelf[i].getQuantity());
+		write.close();
+	}
+	
+	/**
+	 * Writes the catalog in the format of updateStock, with the given quantities
+	 * @param write     output of the catalog
+	 * @param quantity  quantity written for each book position in bookshelf
+	 */
+	void writeStock(PrintWriter write, IntUnaryOperator quantity) {
 		write.println("Title,ISBN,Author,Quantity,Price,Tax");
 		for(int i = 0; i < bookshelf.length; i++) {
-			write.println(bookshelf[i].getTitle()+
-					","+bookshelf[i].getISBN()+
-					","+bookshelf[i].getAuthor()+
-					","+Integer.toString(bookshelf[i].getQuantity())+
-					","+Double.toString(bookshelf[i].getPrice())+
-					","+Double.toString(bookshelf[i].getTax())+"%");
+			Book book = bookshelf[i];
+			printField(write, book.getTitle());
+			write.print(',');
+			printField(write, book.getISBN());
+			write.print(',');
+			printField(write, book.getAuthor());
+			write.print(',');
+			write.print(quantity.applyAsInt(i));
+			write.print(',');
+			write.print(book.getPrice());
+			write.print(',');
+			write.print(book.getTax());
+			write.println('%');
+		}
+	}
+	
+	/**
+	 * Prints a CSV field, between double quotes and with its quotes doubled if it
+	 * holds a comma, a quote or a line break
+	 * @param write  output file
+	 * @param field  text of the field
+	 */
+	private static void printField(PrintWriter write, String field) {
+		boolean quote = false;
+		for(int k = 0; k < field.length() && !quote; k++) {
+			char c = field.charAt(k);
+			quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+		}
+		if(!quote) {
+			write.print(field);
+			return;
+		}
+		write.print('"');
+		write.print(field.replace("\"", "\"\""));
+		write.print('"');
+	}
+	
+	/**
+	 * Updates the stock to represent the daily sales and saves it on a CSV file and
+	 * on a binary snapshot file
+	 * @param fileName          output CSV file
+	 * @param snapshotFileName  output snapshot file
+	 * @throws FileNotFoundException
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public void updateStock(String fileName, String snapshotFileName) throws IOException {
+		updateStock(fileName);
+		writeSnapshot(snapshotFileName);
+	}
+	
+	/**
+	 * Read-only list of the books between two places of an index order
+	 */
+	private class ShelfView extends AbstractList<Book> {
+		
+		private final int [] order;
+		private final int from;
+		private final int to;
+		
+		/**
+		 * Creates the list of the books from place from (inclusive) to place to (exclusive)
+		 * @param order  bookshelf positions in index order
+		 * @param from   first place in the order
+		 * @param to     place after the last one
+		 */
+		private ShelfView(int [] order, int from, int to) {
+			this.order = order;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		public Book get(int index) {
+			if(index < 0 || index >= to - from) {
+				throw new IndexOutOfBoundsException(index);
+			}
+			return bookshelf[order[from + index]];
+		}
+		
+		@Override
+		public int size() {
+			return to - from;
+		}
+	}
+	
+	/**
+	 * Task that runs an action for every position in a range, splitting the range
+	 * in halves until the parts are small enough
+	 */
+	private static class RangeTask extends RecursiveAction {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private final int from;
+		private final int to;
+		private final int grain;
+		private final IntConsumer action;
+		
+		/**
+		 * Creates a task for the positions from (inclusive) to to (exclusive)
+		 * @param from    first position
+		 * @param to      position after the last one
+		 * @param grain   largest number of positions run without splitting
+		 * @param action  action run for each position
+		 */
+		private RangeTask(int from, int to, int grain, IntConsumer action) {
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+			this.action = action;
+		}
+		
+		@Override
+		protected void compute() {
+			if(to - from <= grain) {
+				for(int i = from; i < to; i++) {
+					action.accept(i);
+				}
+			}
+			else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new RangeTask(from, middle, grain, action), new RangeTask(middle, to, grain, action));
+			}
 		}
-		write.close();
 	}
 	
 	
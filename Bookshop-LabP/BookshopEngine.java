@@ -0,0 +1,210 @@
+package project;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Processes purchases for many bookshops on a fixed set of worker threads, the
+ * shards. Every book belongs to one shard, chosen by a hash of its bookshop and its
+ * ISBN, and only that shard's thread sells it, so the stock of a book is never
+ * contended. Purchases reach their shard through a lock-free queue and the caller
+ * gets a CompletableFuture that is completed by the shard's thread; callers that
+ * chain slow work on it should use the async methods of CompletableFuture.
+ *
+ * Purchases of the same book are applied in the order they were submitted from one
+ * thread. Purchases of books that do not exist are answered at once.
+ *
+ * @author Madalena Machado fc59858
+ */
+
+public class BookshopEngine implements AutoCloseable {
+
+	private final Shard [] shards;
+	private volatile boolean running = true;
+
+	/**
+	 * Creates an engine with one shard per available processor
+	 */
+	public BookshopEngine() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates an engine and starts its worker threads
+	 * @param numberOfShards   the number of shards, one thread each
+	 * @requires {@code numberOfShards > 0}
+	 */
+	public BookshopEngine(int numberOfShards) {
+		this.shards = new Shard [numberOfShards];
+		for(int s = 0; s < numberOfShards; s++) {
+			shards[s] = new Shard("bookshop-shard-" + s);
+		}
+		for(Shard shard : shards) {
+			shard.thread.start();
+		}
+	}
+
+	/**
+	 * Sends a purchase to the shard that owns the book
+	 * @param shop          the bookshop selling the book
+	 * @param titleOrISBN   title or ISBN of the book asked for
+	 * @param buyer         name of the buyer
+	 * @return a future completed with the purchase status, in the format of the
+	 *         lines of Bookshop.readPurchase
+	 * @throws RejectedExecutionException if the engine was closed
+	 */
+	public CompletableFuture<String> purchase(Bookshop shop, String titleOrISBN, String buyer) {
+		if(!running) {
+			throw new RejectedExecutionException("engine closed");
+		}
+		Book book = shop.findBook(titleOrISBN);
+		if(book == null) {
+			return CompletableFuture.completedFuture(shop.purchase(titleOrISBN, buyer));
+		}
+		Purchase purchase = new Purchase(shop, titleOrISBN, buyer);
+		shardOf(shop, book).submit(purchase);
+		return purchase.result;
+	}
+
+	/**
+	 * Returns the number of shards
+	 * @return the number of worker threads
+	 */
+	public int getNumberOfShards() {
+		return shards.length;
+	}
+
+	/**
+	 * Stops taking purchases, lets the shards finish the ones already sent and waits
+	 * for their threads to end. Purchases sent while the engine closes may fail with
+	 * a RejectedExecutionException. If the calling thread is interrupted, it still
+	 * waits for every shard and its interrupt status is set again at the end
+	 */
+	@Override
+	public void close() {
+		running = false;
+		for(Shard shard : shards) {
+			LockSupport.unpark(shard.thread);
+		}
+		boolean interrupted = false;
+		for(Shard shard : shards) {
+			while(true) {
+				try {
+					shard.thread.join();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			shard.drain();
+		}
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Returns the shard that owns a book
+	 * @param shop   the bookshop of the book
+	 * @param book   the book
+	 * @return the owner shard
+	 */
+	private Shard shardOf(Bookshop shop, Book book) {
+		int h = book.getISBN().hashCode() * 0x9E3779B9 + System.identityHashCode(shop);
+		h ^= h >>> 16;
+		return shards[Math.floorMod(h, shards.length)];
+	}
+
+	/**
+	 * Purchase waiting in a shard queue
+	 */
+	private static class Purchase {
+
+		private final Bookshop shop;
+		private final String titleOrISBN;
+		private final String buyer;
+		private final CompletableFuture<String> result = new CompletableFuture<String>();
+
+		/**
+		 * Creates a purchase
+		 * @param shop          the bookshop selling the book
+		 * @param titleOrISBN   title or ISBN of the book asked for
+		 * @param buyer         name of the buyer
+		 */
+		private Purchase(Bookshop shop, String titleOrISBN, String buyer) {
+			this.shop = shop;
+			this.titleOrISBN = titleOrISBN;
+			this.buyer = buyer;
+		}
+
+		/**
+		 * Makes the purchase and completes the future
+		 */
+		private void run() {
+			try {
+				result.complete(shop.purchase(titleOrISBN, buyer));
+			} catch (RuntimeException e) {
+				result.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Worker thread with its queue of purchases. The thread parks when the queue is
+	 * empty and is unparked by every submit.
+	 */
+	private class Shard implements Runnable {
+
+		private final ConcurrentLinkedQueue<Purchase> queue = new ConcurrentLinkedQueue<Purchase>();
+		private final Thread thread;
+
+		/**
+		 * Creates a shard and its thread, not yet started
+		 * @param name   name of the thread
+		 */
+		private Shard(String name) {
+			this.thread = new Thread(this, name);
+			thread.setDaemon(true);
+		}
+
+		/**
+		 * Adds a purchase to the queue and wakes the thread
+		 * @param purchase   the purchase
+		 */
+		private void submit(Purchase purchase) {
+			queue.offer(purchase);
+			LockSupport.unpark(thread);
+			if(!running && thread.getState() == Thread.State.TERMINATED) {
+				drain();
+			}
+		}
+
+		@Override
+		public void run() {
+			while(true) {
+				Purchase purchase = queue.poll();
+				if(purchase != null) {
+					purchase.run();
+				}
+				else if(running) {
+					LockSupport.park(this);
+				}
+				else {
+					return;
+				}
+			}
+		}
+
+		/**
+		 * Fails the purchases left in the queue after the thread ended, including any
+		 * sent while the engine was closing
+		 */
+		private void drain() {
+			Purchase purchase;
+			while((purchase = queue.poll()) != null) {
+				purchase.result.completeExceptionally(new RejectedExecutionException("engine closed"));
+			}
+		}
+	}
+}
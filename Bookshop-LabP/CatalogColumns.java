@@ -0,0 +1,191 @@
+package project;
+import java.util.HashMap;
+
+/**
+ * Column store of the numeric data of a bookshop catalog, for analytics over many
+ * books. Quantities, prices and taxes are kept in parallel primitive arrays, indexed
+ * by bookshelf position starting at 0, and authors are replaced by small integer ids
+ * from a dictionary. Aggregates are plain loops over the arrays, with no objects to
+ * follow and no branches the JIT compiler cannot turn into vector code.
+ *
+ * The columns are a copy of the catalog: prices, taxes and authors never change, and
+ * refreshStock reads the quantities again after sales.
+ *
+ * @author Madalena Machado fc59858
+ */
+
+public class CatalogColumns {
+
+	private final Bookshop shop;
+	private final int size;
+	private final int [] quantity;
+	private final double [] price;
+	private final double [] tax;
+	private final int [] authorId;
+	private final String [] authors;
+
+	/**
+	 * Creates the columns of the given bookshop
+	 * @param shop   the bookshop
+	 */
+	public CatalogColumns(Bookshop shop) {
+		this.shop = shop;
+		this.size = shop.getNumberOfBooks();
+		this.quantity = new int [size];
+		this.price = new double [size];
+		this.tax = new double [size];
+		this.authorId = new int [size];
+
+		HashMap<String, Integer> dictionary = new HashMap<String, Integer>();
+		for(int i = 0; i < size; i++) {
+			Book book = shop.getBook(i+1);
+			quantity[i] = book.getQuantity();
+			price[i] = book.getPrice();
+			tax[i] = book.getTax();
+			Integer id = dictionary.putIfAbsent(book.getAuthor(), dictionary.size());
+			authorId[i] = id == null ? dictionary.size() - 1 : id;
+		}
+		this.authors = new String [dictionary.size()];
+		for(String author : dictionary.keySet()) {
+			authors[dictionary.get(author)] = author;
+		}
+	}
+
+	/**
+	 * Reads the quantities of the books again from the bookshop
+	 */
+	public void refreshStock() {
+		for(int i = 0; i < size; i++) {
+			quantity[i] = shop.getBook(i+1).getQuantity();
+		}
+	}
+
+	/**
+	 * Returns the number of books in the columns
+	 * @return the number of books
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the number of books available in stock
+	 * @return the number of books with a positive quantity
+	 */
+	public int availableBooks() {
+		int books = 0;
+		for(int i = 0; i < size; i++) {
+			books += (-quantity[i]) >>> 31;
+		}
+		return books;
+	}
+
+	/**
+	 * Returns the number of copies in stock
+	 * @return the sum of the quantities
+	 */
+	public long totalCopies() {
+		long copies = 0;
+		for(int i = 0; i < size; i++) {
+			copies += quantity[i];
+		}
+		return copies;
+	}
+
+	/**
+	 * Returns the price of every copy in stock
+	 * @return the sum of quantity times price
+	 */
+	public double stockValue() {
+		double value = 0;
+		for(int i = 0; i < size; i++) {
+			value += quantity[i] * price[i];
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the profit the bookshop would make selling every copy in stock
+	 * @return the sum of quantity times price without tax
+	 */
+	public double stockProfit() {
+		double profit = 0;
+		for(int i = 0; i < size; i++) {
+			profit += quantity[i] * price[i] * (1 - tax[i] / 100);
+		}
+		return profit;
+	}
+
+	/**
+	 * Counts the books by price, in buckets of the same width between min and max.
+	 * Books priced below min or from max up are not counted
+	 * @param min       lowest price of the first bucket
+	 * @param max       price where the last bucket ends
+	 * @param buckets   number of buckets
+	 * @return the number of books in each bucket
+	 * @requires {@code min < max && buckets > 0}
+	 */
+	public int [] priceHistogram(double min, double max, int buckets) {
+		int [] counts = new int [buckets];
+		double scale = buckets / (max - min);
+		for(int i = 0; i < size; i++) {
+			double p = price[i];
+			if(p >= min && p < max) {
+				counts[Math.min(buckets - 1, (int) ((p - min) * scale))]++;
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Returns the number of different authors
+	 * @return the size of the author dictionary
+	 */
+	public int numberOfAuthors() {
+		return authors.length;
+	}
+
+	/**
+	 * Returns the author with the given id
+	 * @param id   author id
+	 * @return the author name
+	 * @requires {@code 0 <= id && id < numberOfAuthors()}
+	 */
+	public String author(int id) {
+		return authors[id];
+	}
+
+	/**
+	 * Returns the id of the author of the book in the given position
+	 * @param i   book position, starting at 0
+	 * @return the author id
+	 * @requires {@code 0 <= i && i < size()}
+	 */
+	public int authorOf(int i) {
+		return authorId[i];
+	}
+
+	/**
+	 * Returns the number of copies in stock by each author
+	 * @return the sum of the quantities of the books of each author, indexed by author id
+	 */
+	public long [] copiesPerAuthor() {
+		long [] copies = new long [authors.length];
+		for(int i = 0; i < size; i++) {
+			copies[authorId[i]] += quantity[i];
+		}
+		return copies;
+	}
+
+	/**
+	 * Returns the price of the copies in stock by each author
+	 * @return the stock value of the books of each author, indexed by author id
+	 */
+	public double [] stockValuePerAuthor() {
+		double [] value = new double [authors.length];
+		for(int i = 0; i < size; i++) {
+			value[authorId[i]] += quantity[i] * price[i];
+		}
+		return value;
+	}
+}
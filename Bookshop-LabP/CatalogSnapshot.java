@@ -0,0 +1,237 @@
+package project;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Binary snapshot of a bookshop catalog, loaded through a memory-mapped read so that
+ * nothing has to be parsed. The file holds, all numbers big-endian:
+ * <ul>
+ * <li>MAGIC, VERSION and the number of books (ints);</li>
+ * <li>the number of different authors (int) and each author once (UTF-8 bytes after
+ * an int length);</li>
+ * <li>for each book, its title and ISBN (UTF-8 bytes after an int length), author id
+ * and quantity (ints), price in cents (long) and tax in basis points (int), as the
+ * bookshop keeps them;</li>
+ * <li>the bookshelf positions sorted by price, by author and by lower case author
+ * (ints), so the indexes do not have to be sorted again.</li>
+ * </ul>
+ *
+ * @author Madalena Machado fc59858
+ */
+
+class CatalogSnapshot {
+
+	/**
+	 * First bytes of every snapshot file
+	 */
+	static final int MAGIC = 0x424B5331; // "BKS1"
+
+	/**
+	 * Version of the format written
+	 */
+	static final int VERSION = 2;
+
+	// two string lengths, an author id, a quantity, a tax, three index positions and a price
+	private static final int MIN_RECORD_BYTES = 8 * Integer.BYTES + Long.BYTES;
+
+	final Book [] books;
+	final long [] priceCents;
+	final int [] taxBasisPoints;
+	final int [] priceOrder;
+	final int [] authorOrder;
+	final int [] lowerAuthorOrder;
+
+	/**
+	 * Creates a snapshot with the given contents
+	 * @param books              the books, in bookshelf order
+	 * @param priceCents         price of each book in cents
+	 * @param taxBasisPoints     tax of each book in basis points
+	 * @param priceOrder         positions sorted by price
+	 * @param authorOrder        positions sorted by author
+	 * @param lowerAuthorOrder   positions sorted by lower case author
+	 */
+	private CatalogSnapshot(Book [] books, long [] priceCents, int [] taxBasisPoints, int [] priceOrder,
+			int [] authorOrder, int [] lowerAuthorOrder) {
+		this.books = books;
+		this.priceCents = priceCents;
+		this.taxBasisPoints = taxBasisPoints;
+		this.priceOrder = priceOrder;
+		this.authorOrder = authorOrder;
+		this.lowerAuthorOrder = lowerAuthorOrder;
+	}
+
+	/**
+	 * Writes a snapshot file
+	 * @param fileName           output file
+	 * @param books              the books, in bookshelf order
+	 * @param priceCents         price of each book in cents
+	 * @param taxBasisPoints     tax of each book in basis points
+	 * @param priceOrder         positions sorted by price
+	 * @param authorOrder        positions sorted by author
+	 * @param lowerAuthorOrder   positions sorted by lower case author
+	 * @throws IOException if the file cannot be written
+	 */
+	static void write(String fileName, Book [] books, long [] priceCents, int [] taxBasisPoints,
+			int [] priceOrder, int [] authorOrder, int [] lowerAuthorOrder) throws IOException {
+		HashMap<String, Integer> authorIds = new HashMap<String, Integer>();
+		for(int i : authorOrder) {
+			authorIds.putIfAbsent(books[i].getAuthor(), authorIds.size());
+		}
+		String [] authors = new String [authorIds.size()];
+		for(String author : authorIds.keySet()) {
+			authors[authorIds.get(author)] = author;
+		}
+		try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				Files.newOutputStream(Paths.get(fileName)), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(books.length);
+			out.writeInt(authors.length);
+			for(String author : authors) {
+				writeString(out, author);
+			}
+			for(int i = 0; i < books.length; i++) {
+				Book book = books[i];
+				writeString(out, book.getTitle());
+				writeString(out, book.getISBN());
+				out.writeInt(authorIds.get(book.getAuthor()));
+				out.writeInt(book.getQuantity());
+				out.writeLong(priceCents[i]);
+				out.writeInt(taxBasisPoints[i]);
+			}
+			for(int [] order : new int [][] {priceOrder, authorOrder, lowerAuthorOrder}) {
+				for(int position : order) {
+					out.writeInt(position);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads a snapshot file through a memory map. Each author is decoded once and
+	 * shared by its books
+	 * @param fileName   the snapshot file name
+	 * @return the snapshot contents
+	 * @throws FileNotFoundException
+	 * @throws IOException if the file cannot be read or is not a valid snapshot
+	 */
+	static CatalogSnapshot read(String fileName) throws IOException {
+		Path path = Paths.get(fileName);
+		try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(fileName + " is too large to be mapped");
+			}
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(in.remaining() < 3 * Integer.BYTES || in.getInt() != MAGIC) {
+				throw new IOException(fileName + " is not a catalog snapshot");
+			}
+			int version = in.getInt();
+			if(version != VERSION) {
+				throw new IOException(fileName + " has snapshot version " + version + ", expected " + VERSION);
+			}
+			int count = in.getInt();
+			if(count < 0 || count > in.remaining() / MIN_RECORD_BYTES) {
+				throw new IOException(fileName + " is corrupt");
+			}
+			byte [] scratch = new byte [256];
+			int numberOfAuthors = in.getInt();
+			if(numberOfAuthors < 0 || numberOfAuthors > in.remaining() / Integer.BYTES) {
+				throw new IOException(fileName + " is corrupt");
+			}
+			String [] authors = new String [numberOfAuthors];
+			for(int a = 0; a < numberOfAuthors; a++) {
+				authors[a] = readString(in, scratch);
+			}
+			Book [] books = new Book [count];
+			long [] priceCents = new long [count];
+			int [] taxBasisPoints = new int [count];
+			for(int i = 0; i < count; i++) {
+				String title = readString(in, scratch);
+				String ISBN = readString(in, scratch);
+				int author = in.getInt();
+				if(author < 0 || author >= numberOfAuthors) {
+					throw new IOException(fileName + " is corrupt");
+				}
+				int quantity = in.getInt();
+				priceCents[i] = in.getLong();
+				taxBasisPoints[i] = in.getInt();
+				// the shortest decimal form of these doubles has at most two decimals
+				books[i] = new Book(title, authors[author], quantity, priceCents[i] / 100.0,
+						taxBasisPoints[i] / 100.0, ISBN);
+			}
+			int [][] orders = new int [3][count];
+			boolean [] seen = new boolean [count];
+			for(int [] order : orders) {
+				in.asIntBuffer().get(order);
+				in.position(in.position() + count * Integer.BYTES);
+				if(!isPermutation(order, seen)) {
+					throw new IOException(fileName + " is corrupt");
+				}
+			}
+			return new CatalogSnapshot(books, priceCents, taxBasisPoints, orders[0], orders[1], orders[2]);
+		} catch (NoSuchFileException e) {
+			throw new FileNotFoundException(fileName);
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new IOException(fileName + " is truncated or corrupt", e);
+		}
+	}
+
+	/**
+	 * Tells whether an order holds every position from 0 to its length - 1 once
+	 * @param order   bookshelf positions
+	 * @param seen    scratch flags, as long as the order
+	 * @return true if the order is a permutation of the positions
+	 */
+	private static boolean isPermutation(int [] order, boolean [] seen) {
+		Arrays.fill(seen, false);
+		for(int position : order) {
+			if(position < 0 || position >= seen.length || seen[position]) {
+				return false;
+			}
+			seen[position] = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Writes a string as its length followed by its UTF-8 bytes
+	 * @param out   output stream
+	 * @param s     string to be written
+	 * @throws IOException if the stream cannot be written
+	 */
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte [] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Reads a string written by writeString
+	 * @param in        mapped snapshot
+	 * @param scratch   buffer for the bytes of short strings
+	 * @return the string read
+	 * @throws IOException if the length is not valid
+	 */
+	private static String readString(MappedByteBuffer in, byte [] scratch) throws IOException {
+		int length = in.getInt();
+		if(length < 0 || length > in.remaining()) {
+			throw new IOException("string of " + length + " bytes does not fit in the snapshot");
+		}
+		byte [] bytes = length <= scratch.length ? scratch : new byte [length];
+		in.get(bytes, 0, length);
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+}
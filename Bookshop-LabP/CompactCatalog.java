@@ -0,0 +1,337 @@
+package project;
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Catalog kept in as little memory as possible, for very large catalogs. Books are
+ * not objects but positions, starting at 0, in parallel arrays:
+ * <ul>
+ * <li>ISBNs made only of digits (such as ISBN-13) are kept as a long and their
+ * number of digits, so leading zeros survive; other ISBNs are kept as Strings;</li>
+ * <li>authors are kept once each in a dictionary, and books hold their id;</li>
+ * <li>prices are kept in cents and taxes in basis points (hundredths of a percent);
+ * values with more than two decimals are rejected, as Money does.</li>
+ * </ul>
+ * Only titles are kept as one String per book. Everything but the quantities is
+ * fixed once loaded.
+ *
+ * @author Madalena Machado fc59858
+ */
+
+public class CompactCatalog {
+
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int MAX_NUMERIC_ISBN_DIGITS = 18;
+
+	private int size;
+	private String [] titles;
+	private long [] isbnValues;
+	private byte [] isbnDigits;
+	private final HashMap<Integer, String> otherISBNs = new HashMap<Integer, String>();
+	private int [] authorIds;
+	private final HashMap<String, Integer> authorDictionary = new HashMap<String, Integer>();
+	private String [] authors = new String [16];
+	private int [] quantities;
+	private int [] pricesCents;
+	private int [] taxesBasisPoints;
+
+	/**
+	 * Creates a compact catalog from a CSV file in the format read by Bookshop,
+	 * without creating Book objects
+	 * @param fileName   the file name
+	 * @throws FileNotFoundException
+	 * @throws IllegalArgumentException if a price or tax has more than two decimals
+	 */
+	public CompactCatalog(String fileName) throws FileNotFoundException {
+		allocate(INITIAL_CAPACITY);
+		try(BufferedReader reader = Files.newBufferedReader(Paths.get(fileName), Bookshop.CHARSET)) {
+			CsvReader csv = new CsvReader(reader);
+			csv.nextRecord();
+			while(csv.nextRecord()) {
+				if(csv.isEmptyRecord()) {
+					continue;
+				}
+				csv.requireFields(Bookshop.CATALOG_FIELDS);
+				String taxString = csv.getField(5);
+				if(taxString.endsWith("%")) {
+					taxString = taxString.substring(0, taxString.length()-1);
+				}
+				add(csv.getField(0), csv.getField(1), csv.getField(2), Integer.parseInt(csv.getField(3).trim()),
+						Double.parseDouble(csv.getField(4)), Double.parseDouble(taxString));
+			}
+		} catch (NoSuchFileException e) {
+			throw new FileNotFoundException(fileName);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		trim();
+	}
+
+	/**
+	 * Creates a compact catalog with the books of a bookshop
+	 * @param shop   the bookshop
+	 */
+	public CompactCatalog(Bookshop shop) {
+		allocate(Math.max(1, shop.getNumberOfBooks()));
+		for(int i = 1; i <= shop.getNumberOfBooks(); i++) {
+			Book book = shop.getBook(i);
+			add(book.getTitle(), book.getISBN(), book.getAuthor(), book.getQuantity(), book.getPrice(), book.getTax());
+		}
+		trim();
+	}
+
+	/**
+	 * Returns the number of books
+	 * @return the number of books
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the title of a book
+	 * @param i   book position
+	 * @return the book title
+	 * @requires {@code 0 <= i && i < size()}
+	 */
+	public String getTitle(int i) {
+		return titles[i];
+	}
+
+	/**
+	 * Returns the ISBN of a book, as it was in the catalog
+	 * @param i   book position
+	 * @return the book ISBN
+	 * @requires {@code 0 <= i && i < size()}
+	 */
+	public String getISBN(int i) {
+		if(isbnDigits[i] == 0) {
+			return otherISBNs.get(i);
+		}
+		String digits = Long.toString(isbnValues[i]);
+		StringBuilder sb = new StringBuilder(isbnDigits[i]);
+		for(int k = digits.length(); k < isbnDigits[i]; k++) {
+			sb.append('0');
+		}
+		return sb.append(digits).toString();
+	}
+
+	/**
+	 * Returns the ISBN of a book as a number
+	 * @param i   book position
+	 * @return the ISBN value, or -1 if the ISBN is not made only of digits
+	 * @requires {@code 0 <= i && i < size()}
+	 */
+	public long getISBNValue(int i) {
+		return isbnDigits[i] == 0 ? -1 : isbnValues[i];
+	}
+
+	/**
+	 * Returns the author of a book
+	 * @param i   book position
+	 * @return the book author
+	 * @requires {@code 0 <= i && i < size()}
+	 */
+	public String getAuthor(int i) {
+		return authors[authorIds[i]];
+	}
+
+	/**
+	 * Returns the id of the author of a book in the author dictionary
+	 * @param i   book position
+	 * @return the author id
+	 * @requires {@code 0 <= i && i < size()}
+	 */
+	public int getAuthorId(int i) {
+		return authorIds[i];
+	}
+
+	/**
+	 * Returns the number of different authors
+	 * @return the size of the author dictionary
+	 */
+	public int numberOfAuthors() {
+		return authorDictionary.size();
+	}
+
+	/**
+	 * Returns the quantity of a book
+	 * @param i   book position
+	 * @return the book quantity
+	 * @requires {@code 0 <= i && i < size()}
+	 */
+	public int getQuantity(int i) {
+		return quantities[i];
+	}
+
+	/**
+	 * Defines the quantity of a book
+	 * @param i          book position
+	 * @param quantity   quantity to be set
+	 * @requires {@code 0 <= i && i < size()}
+	 */
+	public void setQuantity(int i, int quantity) {
+		quantities[i] = quantity;
+	}
+
+	/**
+	 * Returns the price of a book in cents
+	 * @param i   book position
+	 * @return the book price in cents
+	 * @requires {@code 0 <= i && i < size()}
+	 */
+	public int getPriceCents(int i) {
+		return pricesCents[i];
+	}
+
+	/**
+	 * Returns the price of a book
+	 * @param i   book position
+	 * @return the book price
+	 * @requires {@code 0 <= i && i < size()}
+	 */
+	public double getPrice(int i) {
+		return pricesCents[i] / 100.0;
+	}
+
+	/**
+	 * Returns the profit the bookshop makes selling one copy of a book
+	 * @param i   book position
+	 * @return the price without tax, in micros
+	 * @requires {@code 0 <= i && i < size()}
+	 */
+	public long getProfitMicros(int i) {
+		return Money.netOfTax(pricesCents[i], taxesBasisPoints[i]);
+	}
+
+	/**
+	 * Returns the tax of a book in basis points
+	 * @param i   book position
+	 * @return the book tax in hundredths of a percent
+	 * @requires {@code 0 <= i && i < size()}
+	 */
+	public int getTaxBasisPoints(int i) {
+		return taxesBasisPoints[i];
+	}
+
+	/**
+	 * Returns the tax of a book
+	 * @param i   book position
+	 * @return the book tax, in percent
+	 * @requires {@code 0 <= i && i < size()}
+	 */
+	public double getTax(int i) {
+		return taxesBasisPoints[i] / 100.0;
+	}
+
+	/**
+	 * Creates a Book object with the data of a book
+	 * @param i   book position
+	 * @return a new Book, not linked to this catalog
+	 * @requires {@code 0 <= i && i < size()}
+	 */
+	public Book toBook(int i) {
+		return new Book(getTitle(i), getAuthor(i), getQuantity(i), getPrice(i), getTax(i), getISBN(i));
+	}
+
+	/**
+	 * Adds a book at the end of the arrays, growing them if they are full
+	 * @param title      the book title
+	 * @param ISBN       the book ISBN
+	 * @param author     the book author
+	 * @param quantity   the book quantity
+	 * @param price      the book price
+	 * @param tax        the book tax, in percent
+	 */
+	private void add(String title, String ISBN, String author, int quantity, double price, double tax) {
+		if(size == titles.length) {
+			resize(2 * size);
+		}
+		int i = size;
+		titles[i] = title;
+		if(isNumeric(ISBN)) {
+			isbnValues[i] = Long.parseLong(ISBN);
+			isbnDigits[i] = (byte) ISBN.length();
+		}
+		else {
+			otherISBNs.put(i, ISBN);
+		}
+		Integer id = authorDictionary.get(author);
+		if(id == null) {
+			id = authorDictionary.size();
+			authorDictionary.put(author, id);
+			if(id == authors.length) {
+				authors = Arrays.copyOf(authors, 2 * authors.length);
+			}
+			authors[id] = author;
+		}
+		authorIds[i] = id;
+		quantities[i] = quantity;
+		pricesCents[i] = Math.toIntExact(Money.cents(price));
+		taxesBasisPoints[i] = Money.basisPoints(tax);
+		size++;
+	}
+
+	/**
+	 * Tells whether an ISBN can be kept as a long
+	 * @param ISBN   the book ISBN
+	 * @return true if it has 1 to 18 characters, all digits
+	 */
+	private static boolean isNumeric(String ISBN) {
+		if(ISBN.isEmpty() || ISBN.length() > MAX_NUMERIC_ISBN_DIGITS) {
+			return false;
+		}
+		for(int k = 0; k < ISBN.length(); k++) {
+			char c = ISBN.charAt(k);
+			if(c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Creates the arrays with the given capacity
+	 * @param capacity   the number of books they can hold
+	 */
+	private void allocate(int capacity) {
+		this.titles = new String [capacity];
+		this.isbnValues = new long [capacity];
+		this.isbnDigits = new byte [capacity];
+		this.authorIds = new int [capacity];
+		this.quantities = new int [capacity];
+		this.pricesCents = new int [capacity];
+		this.taxesBasisPoints = new int [capacity];
+	}
+
+	/**
+	 * Copies the arrays into arrays with the given capacity
+	 * @param capacity   the number of books they can hold
+	 */
+	private void resize(int capacity) {
+		this.titles = Arrays.copyOf(titles, capacity);
+		this.isbnValues = Arrays.copyOf(isbnValues, capacity);
+		this.isbnDigits = Arrays.copyOf(isbnDigits, capacity);
+		this.authorIds = Arrays.copyOf(authorIds, capacity);
+		this.quantities = Arrays.copyOf(quantities, capacity);
+		this.pricesCents = Arrays.copyOf(pricesCents, capacity);
+		this.taxesBasisPoints = Arrays.copyOf(taxesBasisPoints, capacity);
+	}
+
+	/**
+	 * Drops the unused ends of the arrays once the catalog is loaded
+	 */
+	private void trim() {
+		if(size < titles.length) {
+			resize(size);
+		}
+		this.authors = Arrays.copyOf(authors, authorDictionary.size());
+	}
+}
@@ -0,0 +1,156 @@
+package project;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads CSV records one at a time from a character stream, with a hand-written
+ * tokenizer instead of regular expressions. Fields are separated by commas and
+ * records by line breaks (\n or \r\n). A field between double quotes may hold
+ * commas and line breaks, and a doubled quote inside it stands for one quote.
+ *
+ * @author Madalena Machado fc59858
+ */
+
+class CsvReader {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final Reader in;
+	private final char [] buffer = new char [BUFFER_SIZE];
+	private int position;
+	private int limit;
+	private final StringBuilder field = new StringBuilder();
+	private String [] fields = new String [8];
+	private int numberOfFields;
+	private long records;
+
+	/**
+	 * Creates a reader of the CSV records in the given stream
+	 * @param in   the character stream, read in blocks
+	 */
+	CsvReader(Reader in) {
+		this.in = in;
+	}
+
+	/**
+	 * Reads the next record, whose fields are then given by getField
+	 * @return true if a record was read, false at the end of the stream
+	 * @throws IOException if the stream cannot be read
+	 */
+	boolean nextRecord() throws IOException {
+		numberOfFields = 0;
+		int c = read();
+		if(c < 0) {
+			return false;
+		}
+		field.setLength(0);
+		records++;
+		boolean quoted = false;
+		while(true) {
+			if(quoted) {
+				if(c < 0) {
+					throw new IOException("unterminated quoted field");
+				}
+				if(c == '"') {
+					c = read();
+					if(c != '"') {
+						quoted = false;
+						continue;
+					}
+				}
+				field.append((char) c);
+			}
+			else if(c == '"') {
+				quoted = true;
+			}
+			else if(c == ',') {
+				endField();
+			}
+			else if(c == '\n' || c < 0) {
+				endField();
+				return true;
+			}
+			else if(c != '\r') {
+				field.append((char) c);
+			}
+			c = read();
+		}
+	}
+
+	/**
+	 * Returns the number of fields in the last record read
+	 * @return the number of fields
+	 */
+	int getNumberOfFields() {
+		return numberOfFields;
+	}
+
+	/**
+	 * Returns a field of the last record read
+	 * @param i   field position, starting at 0
+	 * @return the field text, without quotes
+	 * @throws IndexOutOfBoundsException if the record has no such field
+	 */
+	String getField(int i) {
+		if(i < 0 || i >= numberOfFields) {
+			throw new IndexOutOfBoundsException("field " + i + " of a record with " + numberOfFields + " fields");
+		}
+		return fields[i];
+	}
+
+	/**
+	 * Returns the fields of the last record read
+	 * @return a new array with the field texts, without quotes
+	 */
+	String [] getFields() {
+		return Arrays.copyOf(fields, numberOfFields);
+	}
+
+	/**
+	 * Checks that the last record read has at least the given number of fields
+	 * @param expected   the number of fields needed
+	 * @throws IOException if the record is shorter, naming the record
+	 */
+	void requireFields(int expected) throws IOException {
+		if(numberOfFields < expected) {
+			throw new IOException("record " + records + " has " + numberOfFields + " fields, expected " + expected);
+		}
+	}
+
+	/**
+	 * Tells whether the last record read is an empty line
+	 * @return true if the record has a single empty field
+	 */
+	boolean isEmptyRecord() {
+		return numberOfFields == 1 && fields[0].isEmpty();
+	}
+
+	/**
+	 * Stores the field being read and starts a new one
+	 */
+	private void endField() {
+		if(numberOfFields == fields.length) {
+			fields = Arrays.copyOf(fields, 2 * fields.length);
+		}
+		fields[numberOfFields++] = field.toString();
+		field.setLength(0);
+	}
+
+	/**
+	 * Reads the next character, refilling the buffer from the stream when it is empty
+	 * @return the character, or -1 at the end of the stream
+	 * @throws IOException if the stream cannot be read
+	 */
+	private int read() throws IOException {
+		if(position == limit) {
+			limit = in.read(buffer, 0, buffer.length);
+			position = 0;
+			if(limit <= 0) {
+				limit = 0;
+				return -1;
+			}
+		}
+		return buffer[position++];
+	}
+}
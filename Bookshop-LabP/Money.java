@@ -0,0 +1,140 @@
+package project;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Exact fixed-point money arithmetic on primitive longs, so that totals never drift
+ * and nothing is allocated per operation. Amounts are kept in micros, millionths of
+ * the currency unit: a price in cents times a tax factor in basis points, such as
+ * the profit of a sale, is a whole number of micros, so sums are exact.
+ *
+ * Conversions from double are exact: a price with more than two decimals, or a tax
+ * with more than two decimals of a percent, is rejected instead of being rounded,
+ * so the price shown and the price added up are always the same. They are meant to
+ * be done once, when a catalog is loaded.
+ *
+ * @author Madalena Machado fc59858
+ */
+
+public final class Money {
+
+	/**
+	 * Number of micros in one currency unit
+	 */
+	public static final long MICROS_PER_UNIT = 1_000_000;
+
+	/**
+	 * Number of micros in one cent
+	 */
+	public static final long MICROS_PER_CENT = 10_000;
+
+	/**
+	 * Number of basis points in a whole (100%)
+	 */
+	public static final int BASIS_POINTS = 10_000;
+
+	private Money() {
+	}
+
+	/**
+	 * Converts a price to cents
+	 * @param price   the price, in currency units
+	 * @return the price in cents
+	 * @throws IllegalArgumentException if the price has more than two decimals or does
+	 *         not fit in a long of cents
+	 */
+	public static long cents(double price) {
+		try {
+			return hundredths(price).longValueExact();
+		} catch (ArithmeticException e) {
+			throw new IllegalArgumentException("price " + price + " cannot be kept in cents");
+		}
+	}
+
+	/**
+	 * Converts a percentage, such as a tax, to basis points
+	 * @param percent   the percentage
+	 * @return the percentage in basis points (hundredths of a percent)
+	 * @throws IllegalArgumentException if the percentage has more than two decimals or
+	 *         does not fit in an int of basis points
+	 */
+	public static int basisPoints(double percent) {
+		try {
+			return hundredths(percent).intValueExact();
+		} catch (ArithmeticException e) {
+			throw new IllegalArgumentException("tax " + percent + " cannot be kept in basis points");
+		}
+	}
+
+	/**
+	 * Converts cents to micros
+	 * @param cents   amount in cents
+	 * @return the amount in micros
+	 */
+	public static long fromCents(long cents) {
+		return Math.multiplyExact(cents, MICROS_PER_CENT);
+	}
+
+	/**
+	 * Returns what is left of a price after a tax is taken from it
+	 * @param cents         price in cents
+	 * @param basisPoints   tax in basis points
+	 * @return the price times (1 - tax), in micros
+	 */
+	public static long netOfTax(long cents, int basisPoints) {
+		return Math.multiplyExact(cents, (long) (BASIS_POINTS - basisPoints));
+	}
+
+	/**
+	 * Converts micros to currency units, for display or for code that works in doubles
+	 * @param micros   amount in micros
+	 * @return the nearest double to the amount in currency units
+	 */
+	public static double toDouble(long micros) {
+		return micros / (double) MICROS_PER_UNIT;
+	}
+
+	/**
+	 * Rounds micros to cents
+	 * @param micros   amount in micros
+	 * @return the amount in cents, rounded half up (away from zero)
+	 */
+	public static long toCents(long micros) {
+		long cents = micros / MICROS_PER_CENT;
+		long rest = micros % MICROS_PER_CENT;
+		if(Math.abs(rest) * 2 >= MICROS_PER_CENT) {
+			cents += Long.signum(rest);
+		}
+		return cents;
+	}
+
+	/**
+	 * Multiplies a value by 100, exactly
+	 * @param value   the value, at its shortest decimal form
+	 * @return the value times 100, with no decimals
+	 * @throws ArithmeticException if the value has more than two decimals
+	 */
+	private static BigDecimal hundredths(double value) {
+		return BigDecimal.valueOf(value).movePointRight(2).setScale(0, RoundingMode.UNNECESSARY);
+	}
+
+	/**
+	 * Formats an amount with two decimals, rounded half up, as %.2f would
+	 * @param micros   amount in micros
+	 * @return the amount, such as 12.35 or -0.50
+	 */
+	public static String format(long micros) {
+		long cents = toCents(micros);
+		StringBuilder sb = new StringBuilder(24);
+		if(cents < 0) {
+			sb.append('-');
+		}
+		long abs = Math.abs(cents);
+		sb.append(abs / 100).append('.');
+		long fraction = abs % 100;
+		if(fraction < 10) {
+			sb.append('0');
+		}
+		return sb.append(fraction).toString();
+	}
+}
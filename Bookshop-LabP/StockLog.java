@@ -0,0 +1,206 @@
+package project;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Keeps the stock of a bookshop on disk without rewriting the whole catalog on every
+ * save. Each save appends one fixed-size record (book position, quantity) for every
+ * book whose quantity changed since the last save. Quantities are absolute, so
+ * replaying a record twice does no harm.
+ *
+ * After a crash, the catalog file is loaded as usual and opening the log replays it
+ * on top. A record cut short by the crash is dropped. Compaction saves, writes the
+ * whole catalog as of that save to a temporary file, moves it over the catalog and
+ * only then empties the log, so a crash at any point leaves a catalog and a log
+ * that replay to the saved stock.
+ *
+ * @author Madalena Machado fc59858
+ */
+
+public class StockLog implements Closeable {
+
+	/**
+	 * First bytes of every log file
+	 */
+	public static final int MAGIC = 0x53544B31; // "STK1"
+
+	private static final int RECORD_BYTES = 2 * Integer.BYTES;
+
+	private final Bookshop shop;
+	private final FileChannel channel;
+	private final int [] saved;
+	private long records;
+
+	/**
+	 * Opens the log in the given file, creating it if needed, and replays the
+	 * records it holds into the bookshop
+	 * @param shop       bookshop loaded from the last compacted catalog
+	 * @param fileName   log file name
+	 * @throws IOException if the file cannot be read or does not belong to the bookshop
+	 */
+	public StockLog(Bookshop shop, String fileName) throws IOException {
+		this.shop = shop;
+		this.channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+				StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			replay(fileName);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		this.saved = new int [shop.getNumberOfBooks()];
+		for(int i = 0; i < saved.length; i++) {
+			saved[i] = shop.getBook(i+1).getQuantity();
+		}
+	}
+
+	/**
+	 * Appends a record for every book whose quantity changed since the last save,
+	 * and forces them to the disk
+	 * @return the number of records written
+	 * @throws IOException if the file cannot be written
+	 */
+	public synchronized int save() throws IOException {
+		int changed = 0;
+		for(int i = 0; i < saved.length; i++) {
+			if(shop.getBook(i+1).getQuantity() != saved[i]) {
+				changed++;
+			}
+		}
+		if(changed == 0) {
+			return 0;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(changed * RECORD_BYTES);
+		int [] quantities = new int [changed];
+		int [] positions = new int [changed];
+		int k = 0;
+		for(int i = 0; i < saved.length && k < changed; i++) {
+			int quantity = shop.getBook(i+1).getQuantity();
+			if(quantity != saved[i]) {
+				buffer.putInt(i).putInt(quantity);
+				positions[k] = i;
+				quantities[k++] = quantity;
+			}
+		}
+		buffer.flip();
+		long end = channel.size();
+		while(buffer.hasRemaining()) {
+			end += channel.write(buffer, end);
+		}
+		channel.force(false);
+		for(int j = 0; j < k; j++) {
+			saved[positions[j]] = quantities[j];
+		}
+		records += k;
+		return k;
+	}
+
+	/**
+	 * Saves the stock, replaces the catalog file with one holding the saved stock, in
+	 * the format of updateStock, and empties the log. The catalog is written to a
+	 * temporary file in the same directory, forced to the disk and moved over the old
+	 * one atomically; if any step fails, the old catalog and the log are kept
+	 * @param fileName   catalog file name, the one the bookshop is loaded from
+	 * @throws IOException if a file cannot be written
+	 */
+	public synchronized void compact(String fileName) throws IOException {
+		save();
+		Path target = Paths.get(fileName).toAbsolutePath();
+		Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+		try {
+			try(FileOutputStream out = new FileOutputStream(temp.toFile());
+					PrintWriter write = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, Bookshop.CHARSET)))) {
+				shop.writeStock(write, i -> saved[i]);
+				write.flush();
+				if(write.checkError()) {
+					throw new IOException("cannot write " + temp);
+				}
+				out.getFD().sync();
+			}
+			Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+		channel.truncate(Integer.BYTES);
+		channel.force(false);
+		records = 0;
+	}
+
+	/**
+	 * Returns the number of records in the log, which grows until the next compaction
+	 * @return the number of records
+	 */
+	public synchronized long getRecords() {
+		return records;
+	}
+
+	/**
+	 * Closes the log file
+	 * @throws IOException if the file cannot be closed
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Writes the header of a new log, or applies the records of an existing one to
+	 * the bookshop, dropping a record cut short at the end
+	 * @param fileName   log file name, for error messages
+	 * @throws IOException if the file cannot be read or does not belong to the bookshop
+	 */
+	private void replay(String fileName) throws IOException {
+		long size = channel.size();
+		if(size < Integer.BYTES) {
+			ByteBuffer header = ByteBuffer.allocate(Integer.BYTES).putInt(MAGIC);
+			header.flip();
+			channel.truncate(0);
+			channel.write(header, 0);
+			channel.force(false);
+			return;
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+		channel.read(buffer, 0);
+		buffer.flip();
+		if(buffer.getInt() != MAGIC) {
+			throw new IOException(fileName + " is not a stock log");
+		}
+		long whole = (size - Integer.BYTES) / RECORD_BYTES;
+		long end = Integer.BYTES + whole * RECORD_BYTES;
+		if(end < size) {
+			channel.truncate(end);
+		}
+
+		buffer = ByteBuffer.allocate(RECORD_BYTES * 1024);
+		long position = Integer.BYTES;
+		while(position < end) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), end - position));
+			while(buffer.hasRemaining()) {
+				position += channel.read(buffer, position);
+			}
+			buffer.flip();
+			while(buffer.hasRemaining()) {
+				int book = buffer.getInt();
+				int quantity = buffer.getInt();
+				if(book < 0 || book >= shop.getNumberOfBooks()) {
+					throw new IOException(fileName + " refers to book " + book + ", not in the catalog");
+				}
+				shop.getBook(book+1).setQuantity(quantity);
+			}
+		}
+		this.records = whole;
+	}
+}
@@ -0,0 +1,162 @@
+package project;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Measures the heap kept by a catalog in three layouts: an array of Book objects
+ * with a String for every field, as loaded by the original Bookshop; a Bookshop as
+ * loaded now, with its shared authors and every index it keeps; and a
+ * CompactCatalog. Each layout is loaded, the heap is collected and the bytes still in
+ * use are reported per book.
+ *
+ * The benchmarks live apart from the bookshop and are compiled together with the
+ * sources of Bookshop-LabP. Run with {@code java -Xmx4g project.CatalogFootprint
+ * [catalog.csv | --books 1000000]}. Without a file, a catalog is generated with the
+ * given number of books (one million by default), ISBN-13s and 20 books per author.
+ *
+ * @author Madalena Machado fc59858
+ */
+
+public class CatalogFootprint {
+
+	private static final int DEFAULT_BOOKS = 1_000_000;
+	private static final int BOOKS_PER_AUTHOR = 20;
+	private static final long SEED = 42;
+
+	private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+	// the measured catalog is kept here so it is not collected while measured
+	private static volatile Object sink;
+
+	/**
+	 * Loads the catalog in each layout and prints the heap it keeps
+	 * @param args   a catalog file, or --books and a number of books
+	 * @throws IOException if the catalog cannot be read or generated
+	 */
+	public static void main(String[] args) throws IOException {
+		String fileName;
+		if(args.length == 1) {
+			fileName = args[0];
+		}
+		else {
+			int books = args.length == 2 && args[0].equals("--books") ? Integer.parseInt(args[1]) : DEFAULT_BOOKS;
+			Path file = Files.createTempFile("catalog", ".csv");
+			file.toFile().deleteOnExit();
+			generate(file, books);
+			fileName = file.toString();
+		}
+		int books = new CompactCatalog(fileName).size();
+
+		System.out.printf("%-28s %14s %12s%n", "layout", "heap MB", "bytes/book");
+		long original = report("Book[], a String per field", books, () -> loadBooks(fileName));
+		long current = report("Bookshop, as loaded now", books, () -> {
+			try {
+				return new Bookshop(fileName, books);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		long compact = report("CompactCatalog", books, () -> {
+			try {
+				return new CompactCatalog(fileName);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+		System.out.printf("CompactCatalog keeps %.1f%% of the original heap and %.1f%% of the Bookshop heap%n",
+				100.0 * compact / original, 100.0 * compact / current);
+	}
+
+	/**
+	 * Loads a layout, measures the heap it keeps and prints it
+	 * @param name     name of the layout
+	 * @param books    number of books in the catalog
+	 * @param loader   loads the layout
+	 * @return the bytes kept
+	 */
+	private static long report(String name, int books, Supplier<Object> loader) {
+		sink = null;
+		long before = usedHeap();
+		sink = loader.get();
+		long bytes = usedHeap() - before;
+		System.out.printf("%-28s %14.1f %12.1f%n", name, bytes / 1e6, (double) bytes / books);
+		return bytes;
+	}
+
+	/**
+	 * Returns the heap in use after collecting it until it stops shrinking
+	 * @return the bytes in use
+	 */
+	private static long usedHeap() {
+		long used = Long.MAX_VALUE;
+		for(int round = 0; round < 10; round++) {
+			System.gc();
+			long now = MEMORY.getHeapMemoryUsage().getUsed();
+			if(now >= used) {
+				return now;
+			}
+			used = now;
+		}
+		return used;
+	}
+
+	/**
+	 * Loads the catalog into Book objects the way the original Bookshop did, with
+	 * String.split and a String for every field
+	 * @param fileName        the catalog file
+	 * @return the books
+	 */
+	private static Book [] loadBooks(String fileName) {
+		List<Book> books = new ArrayList<Book>();
+		try(BufferedReader reader = Files.newBufferedReader(Paths.get(fileName))) {
+			reader.readLine();
+			String line;
+			while((line = reader.readLine()) != null) {
+				String [] data = line.split(",");
+				books.add(new Book(data[0], data[2], Integer.parseInt(data[3]), Double.parseDouble(data[4]),
+						Double.parseDouble(data[5].substring(0, data[5].length()-1)), data[1]));
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return books.toArray(new Book [0]);
+	}
+
+	/**
+	 * Writes a random catalog
+	 * @param file    output file
+	 * @param books   number of books
+	 * @throws IOException if the file cannot be written
+	 */
+	private static void generate(Path file, int books) throws IOException {
+		Random random = new Random(SEED);
+		try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+			out.println("Title,ISBN,Author,Quantity,Price,Tax");
+			for(int i = 0; i < books; i++) {
+				out.print("Book number ");
+				out.print(i);
+				out.print(',');
+				out.print(9780000000000L + i);
+				out.print(",Author ");
+				out.print(random.nextInt(Math.max(1, books / BOOKS_PER_AUTHOR)));
+				out.print(',');
+				out.print(random.nextInt(20));
+				out.print(',');
+				out.print((100 + random.nextInt(9900)) / 100.0);
+				out.print(',');
+				out.print(random.nextBoolean() ? "6.0%" : "23.0%");
+				out.println();
+			}
+		}
+	}
+}
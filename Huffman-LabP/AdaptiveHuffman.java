@@ -0,0 +1,170 @@
+package project;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * This class codes a live stream of messages in one pass, with no table sent ahead. The
+ * encoder and the decoder start from the same empty model and update it in the same way
+ * after every character, so they always agree on the code.
+ *
+ * The model counts the characters seen and builds a new canonical code from the counts
+ * every interval characters. The interval starts small, so the code adapts quickly, and
+ * doubles up to MAX_INTERVAL. Characters without a code yet are sent as an escape code
+ * followed by their 16 bits. Counts are halved when they grow large, so the code follows
+ * changes in the stream.
+ *
+ * Each message is coded into a packet: its number of characters, as a varint, followed by
+ * the packed bits. Packets must be decoded in the order they were encoded.
+ *
+ * @author fc59858 Madalena Machado
+ *
+ */
+public class AdaptiveHuffman {
+
+	/**
+	 * Number of characters between the first two rebuilds of the code
+	 */
+	public static final int MIN_INTERVAL = 16;
+
+	/**
+	 * Largest number of characters between two rebuilds of the code
+	 */
+	public static final int MAX_INTERVAL = 4096;
+
+	private static final int ESCAPE = Character.MAX_VALUE + 1;
+	private static final int MAX_CODE_LENGTH = 24;
+	private static final long MAX_TOTAL = 1 << 20;
+
+	/**
+	 * This class encodes messages, updating its model as they go
+	 */
+	public static class Encoder {
+
+		private final Model model = new Model();
+
+		/**
+		 * This method encodes a message into a packet
+		 *
+		 * @param message text to be coded
+		 * @return the packet, to be given to Decoder.decode
+		 */
+		public byte[] encode(CharSequence message) {
+			BitBuffer bits = new BitBuffer(message.length() / 2 + 8);
+			for(int i = 0; i < message.length(); i++) {
+				char c = message.charAt(i);
+				CodeTable table = model.table;
+				if(table.contains(c)) {
+					bits.write(table.getBits(c), table.getLength(c));
+				}
+				else {
+					bits.write(table.getBits(ESCAPE), table.getLength(ESCAPE));
+					bits.write(c, Character.SIZE);
+				}
+				model.update(c);
+			}
+			ByteArrayOutputStream packet = new ByteArrayOutputStream(bits.byteLength() + 5);
+			try {
+				CodeTable.writeVarint(packet, message.length());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			byte[] packed = bits.toPackedArray();
+			packet.write(packed, 0, packed.length);
+			return packet.toByteArray();
+		}
+	}
+
+	/**
+	 * This class decodes packets, updating its model as they go
+	 */
+	public static class Decoder {
+
+		private final Model model = new Model();
+		private HuffmanDecoder decoder;
+		private CodeTable decoderTable;
+
+		/**
+		 * This method decodes a packet written by Encoder.encode
+		 *
+		 * @param packet encoded message
+		 * @return the decoded text
+		 * @throws IllegalArgumentException if the packet is malformed or out of order
+		 */
+		public String decode(byte[] packet) {
+			ByteArrayInputStream in = new ByteArrayInputStream(packet);
+			int length;
+			try {
+				length = CodeTable.readVarint(in);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("malformed packet", e);
+			}
+			int offset = packet.length - in.available();
+			BitReader bits = new BitReader(packet, offset, packet.length - offset, 8L * (packet.length - offset));
+
+			StringBuilder sb = new StringBuilder(length);
+			for(int i = 0; i < length; i++) {
+				if(decoderTable != model.table) {
+					decoderTable = model.table;
+					decoder = new HuffmanDecoder(decoderTable);
+				}
+				int symbol = decoder.decodeSymbol(bits);
+				char c = symbol == ESCAPE ? (char) bits.read(Character.SIZE) : (char) symbol;
+				sb.append(c);
+				model.update(c);
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * This class holds the counts and the current code, shared by the encoder and decoder rules
+	 */
+	private static class Model {
+
+		private final long[] counts = new long[ESCAPE + 1];
+		private CodeTable table;
+		private long total;
+		private int sinceRebuild;
+		private int interval = MIN_INTERVAL;
+
+		/**
+		 * This constructor creates a model where only the escape has a code
+		 */
+		private Model() {
+			counts[ESCAPE] = 1;
+			table = CodeTable.canonical(HuffmanBuilder.codeLengths(counts));
+		}
+
+		/**
+		 * This method counts a character and rebuilds the code when the interval is over
+		 *
+		 * @param c character just coded
+		 */
+		private void update(char c) {
+			counts[c]++;
+			total++;
+			if(++sinceRebuild >= interval) {
+				rebuild();
+			}
+		}
+
+		/**
+		 * This method builds a new code from the counts, halving them first when they are large
+		 */
+		private void rebuild() {
+			if(total > MAX_TOTAL) {
+				total = 0;
+				for(int s = 0; s < ESCAPE; s++) {
+					counts[s] = (counts[s] + 1) >>> 1;
+					total += counts[s];
+				}
+			}
+			table = CodeTable.canonical(HuffmanBuilder.limitedCodeLengths(counts, MAX_CODE_LENGTH));
+			sinceRebuild = 0;
+			interval = Math.min(2 * interval, MAX_INTERVAL);
+		}
+	}
+}
@@ -0,0 +1,274 @@
+package project;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * This class stores a growable sequence of bits packed eight to a byte, the most
+ * significant bit of each byte first. The packed form is written with a trailer
+ * holding the number of valid bits, so the padding of the last byte can be told apart
+ * from the data.
+ *
+ * @author fc59858 Madalena Machado
+ *
+ */
+public class BitBuffer {
+
+	/**
+	 * Number of bytes used by the bit-length trailer
+	 */
+	public static final int TRAILER_BYTES = Long.BYTES;
+
+	private byte[] data;
+	private int size;
+	private long accumulator;
+	private int pendingBits;
+	private long bitLength;
+
+	/**
+	 * This constructor creates an empty bit buffer
+	 */
+	public BitBuffer() {
+		this(64);
+	}
+
+	/**
+	 * This constructor creates an empty bit buffer with room for the given number of bytes
+	 *
+	 * @param initialBytes initial capacity in bytes
+	 * @requires {@code initialBytes >= 0}
+	 */
+	public BitBuffer(int initialBytes) {
+		this.data = new byte[Math.max(initialBytes, 8)];
+	}
+
+	/**
+	 * This method appends the lowest length bits of the given value, the most significant one first
+	 *
+	 * @param bits   value holding the bits to be appended
+	 * @param length number of bits to be appended
+	 * @requires {@code 0 <= length && length <= 64}
+	 */
+	public void write(long bits, int length) {
+		if(length > 56) {
+			write(bits >>> 32, length - 32);
+			write(bits, 32);
+			return;
+		}
+		if(length == 0) {
+			return;
+		}
+		accumulator = (accumulator << length) | (bits & ((1L << length) - 1));
+		pendingBits += length;
+		bitLength += length;
+		while(pendingBits >= 8) {
+			pendingBits -= 8;
+			putByte((byte) (accumulator >>> pendingBits));
+		}
+	}
+
+	/**
+	 * This method appends a single bit
+	 *
+	 * @param bit true to append a one and false to append a zero
+	 */
+	public void writeBit(boolean bit) {
+		write(bit ? 1 : 0, 1);
+	}
+
+	/**
+	 * This method appends all the bits of the given buffer, right after the last bit of this
+	 * one. When this buffer ends on a byte boundary the bytes are copied as they are.
+	 *
+	 * @param other buffer whose bits are appended
+	 * @requires {@code other != this}
+	 */
+	public void append(BitBuffer other) {
+		if(pendingBits == 0) {
+			if(size + other.size > data.length) {
+				data = Arrays.copyOf(data, Math.max(data.length << 1, size + other.size));
+			}
+			System.arraycopy(other.data, 0, data, size, other.size);
+			size += other.size;
+			bitLength += 8L * other.size;
+		}
+		else {
+			int i = 0;
+			for(; i + 7 <= other.size; i += 7) {
+				long word = 0;
+				for(int k = 0; k < 7; k++) {
+					word = (word << 8) | (other.data[i + k] & 0xFF);
+				}
+				write(word, 56);
+			}
+			for(; i < other.size; i++) {
+				write(other.data[i], 8);
+			}
+		}
+		write(other.accumulator, other.pendingBits);
+	}
+
+	/**
+	 * Returns the number of bits stored
+	 *
+	 * @return the number of bits stored
+	 */
+	public long bitLength() {
+		return bitLength;
+	}
+
+	/**
+	 * Returns the number of bytes needed to hold the stored bits, without the trailer
+	 *
+	 * @return the number of packed bytes
+	 */
+	public int byteLength() {
+		return pendingBits == 0 ? size : size + 1;
+	}
+
+	/**
+	 * Returns the bit in the given position
+	 *
+	 * @param index bit position
+	 * @return true if the bit is a one and false otherwise
+	 * @requires {@code 0 <= index && index < bitLength()}
+	 */
+	public boolean getBit(long index) {
+		int byteIndex = (int) (index >>> 3);
+		int b = byteIndex < size ? data[byteIndex] : lastByte();
+		return ((b >>> (7 - (int) (index & 7))) & 1) != 0;
+	}
+
+	/**
+	 * Returns the packed bits, with the last byte padded with zeros, without the trailer
+	 *
+	 * @return a new array with the packed bits
+	 */
+	public byte[] toPackedArray() {
+		byte[] packed = Arrays.copyOf(data, byteLength());
+		if(pendingBits > 0) {
+			packed[size] = lastByte();
+		}
+		return packed;
+	}
+
+	/**
+	 * Returns the packed bits followed by the bit-length trailer
+	 *
+	 * @return a new array with the packed bits and the trailer
+	 */
+	public byte[] toByteArray() {
+		ByteBuffer buffer = ByteBuffer.allocate(byteLength() + TRAILER_BYTES);
+		writeTo(buffer);
+		return buffer.array();
+	}
+
+	/**
+	 * This method writes the packed bits followed by the bit-length trailer to the given buffer
+	 *
+	 * @param buffer destination buffer
+	 * @requires {@code buffer.remaining() >= byteLength() + TRAILER_BYTES}
+	 */
+	public void writeTo(ByteBuffer buffer) {
+		buffer.put(data, 0, size);
+		if(pendingBits > 0) {
+			buffer.put(lastByte());
+		}
+		buffer.putLong(bitLength);
+	}
+
+	/**
+	 * This method writes the packed bits followed by the bit-length trailer to the given stream
+	 *
+	 * @param out destination stream
+	 * @throws IOException if the stream fails
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		out.write(data, 0, size);
+		if(pendingBits > 0) {
+			out.write(lastByte());
+		}
+		byte[] trailer = new byte[TRAILER_BYTES];
+		ByteBuffer.wrap(trailer).putLong(bitLength);
+		out.write(trailer);
+	}
+
+	/**
+	 * This method rebuilds a bit buffer from packed bits followed by the bit-length trailer
+	 *
+	 * @param packed packed bits and trailer, as produced by toByteArray
+	 * @return a bit buffer with the same bits
+	 * @throws IllegalArgumentException if the trailer does not match the packed bits
+	 */
+	public static BitBuffer fromByteArray(byte[] packed) {
+		if(packed.length < TRAILER_BYTES) {
+			throw new IllegalArgumentException("missing bit-length trailer");
+		}
+		int bytes = packed.length - TRAILER_BYTES;
+		long bits = ByteBuffer.wrap(packed, bytes, TRAILER_BYTES).getLong();
+		if(bits < 0 || (bits + 7) >>> 3 != bytes) {
+			throw new IllegalArgumentException("bit length " + bits + " does not match " + bytes + " bytes");
+		}
+		BitBuffer buffer = new BitBuffer(bytes);
+		System.arraycopy(packed, 0, buffer.data, 0, bytes);
+		buffer.size = (int) (bits >>> 3);
+		buffer.pendingBits = (int) (bits & 7);
+		if(buffer.pendingBits > 0) {
+			buffer.accumulator = (packed[buffer.size] & 0xFF) >>> (8 - buffer.pendingBits);
+		}
+		buffer.bitLength = bits;
+		return buffer;
+	}
+
+	/**
+	 * Returns a reader over the stored bits, without copying them
+	 *
+	 * @return a reader positioned at the first bit
+	 */
+	BitReader reader() {
+		if(pendingBits > 0) {
+			if(size == data.length) {
+				data = Arrays.copyOf(data, data.length << 1);
+			}
+			data[size] = lastByte();
+		}
+		return new BitReader(data, 0, byteLength(), bitLength);
+	}
+
+	/**
+	 * Returns a string representation of the stored bits, one '0' or '1' per bit
+	 *
+	 * @return the stored bits as text
+	 */
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder((int) bitLength);
+		for(long i = 0; i < bitLength; i++) {
+			sb.append(getBit(i) ? '1' : '0');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the incomplete last byte, padded with zeros
+	 *
+	 * @return the last byte
+	 */
+	private byte lastByte() {
+		return (byte) (accumulator << (8 - pendingBits));
+	}
+
+	/**
+	 * This method appends a complete byte, growing the array when needed
+	 *
+	 * @param b byte to be appended
+	 */
+	private void putByte(byte b) {
+		if(size == data.length) {
+			data = Arrays.copyOf(data, data.length << 1);
+		}
+		data[size++] = b;
+	}
+}
@@ -0,0 +1,138 @@
+package project;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class reads bits, the most significant bit of each byte first, from packed bytes.
+ * Up to 64 bits are kept in a window so that several bits can be looked at in one step.
+ * Bytes come from an array or, without being copied, from a ByteBuffer such as a mapped file.
+ *
+ * @author fc59858 Madalena Machado
+ *
+ */
+class BitReader {
+
+	protected byte[] buffer;
+	protected int position;
+	protected int limit;
+	protected ByteBuffer source;
+	private long window;
+	private int available;
+	private long remaining;
+
+	/**
+	 * This constructor creates a reader over the given bytes
+	 *
+	 * @param buffer    packed bits
+	 * @param offset    position of the first byte
+	 * @param length    number of bytes that can be read
+	 * @param bitLength number of valid bits
+	 * @requires {@code bitLength <= 8L * length}
+	 */
+	BitReader(byte[] buffer, int offset, int length, long bitLength) {
+		this.buffer = buffer;
+		this.position = offset;
+		this.limit = offset + length;
+		this.remaining = bitLength;
+	}
+
+	/**
+	 * This constructor creates a reader over the remaining bytes of the given buffer
+	 *
+	 * @param source    packed bits
+	 * @param bitLength number of valid bits
+	 * @requires {@code bitLength <= 8L * source.remaining()}, unless fill provides more bytes
+	 */
+	BitReader(ByteBuffer source, long bitLength) {
+		this(new byte[0], 0, 0, bitLength);
+		this.source = source;
+	}
+
+	/**
+	 * This method refills buffer, position and limit, or replaces source, once all bytes were
+	 * read. Readers over a source that delivers bytes in parts override it.
+	 *
+	 * @return true if more bytes are available and false otherwise
+	 */
+	protected boolean fill() {
+		return false;
+	}
+
+	/**
+	 * Returns the number of bits still to be read
+	 *
+	 * @return the number of bits still to be read
+	 */
+	long remaining() {
+		return remaining;
+	}
+
+	/**
+	 * Returns the next bits without consuming them. Bits after the end read as zeros.
+	 *
+	 * @param n number of bits
+	 * @return the next n bits, aligned to the right
+	 * @requires {@code 0 < n && n <= 56}
+	 */
+	long peek(int n) {
+		if(available < n) {
+			refill();
+			if(available < n) {
+				return (window << (n - available)) & ((1L << n) - 1);
+			}
+		}
+		return (window >>> (available - n)) & ((1L << n) - 1);
+	}
+
+	/**
+	 * This method consumes bits that were looked at with peek
+	 *
+	 * @param n number of bits
+	 * @throws IllegalArgumentException if fewer than n bits remain
+	 * @requires {@code n <= available bits seen by the last peek}
+	 */
+	void skip(int n) {
+		if(n > remaining) {
+			throw new IllegalArgumentException("truncated input: " + n + " bits needed, " + remaining + " left");
+		}
+		available -= n;
+		remaining -= n;
+	}
+
+	/**
+	 * This method reads the next bits
+	 *
+	 * @param n number of bits
+	 * @return the next n bits, aligned to the right
+	 * @throws IllegalArgumentException if fewer than n bits remain
+	 * @requires {@code 0 < n && n <= 56}
+	 */
+	long read(int n) {
+		long bits = peek(n);
+		skip(n);
+		return bits;
+	}
+
+	/**
+	 * This method moves whole bytes into the window while there is room
+	 */
+	private void refill() {
+		while(available <= 56) {
+			int b;
+			if(position < limit) {
+				b = buffer[position++] & 0xFF;
+			}
+			else if(source != null && source.hasRemaining()) {
+				b = source.get() & 0xFF;
+			}
+			else if(fill()) {
+				continue;
+			}
+			else {
+				return;
+			}
+			window = (window << 8) | b;
+			available += 8;
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package project;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class writes bits to a stream, the most significant bit of each byte first, keeping
+ * only a small buffer in memory. It is the streaming counterpart of BitBuffer.
+ *
+ * @author fc59858 Madalena Machado
+ *
+ */
+class BitWriter {
+
+	private final OutputStream out;
+	private final byte[] buffer;
+	private int size;
+	private long accumulator;
+	private int pendingBits;
+	private long bitLength;
+
+	/**
+	 * This constructor creates a writer to the given stream
+	 *
+	 * @param out destination stream
+	 */
+	BitWriter(OutputStream out) {
+		this.out = out;
+		this.buffer = new byte[1 << 16];
+	}
+
+	/**
+	 * This method writes the lowest length bits of the given value, the most significant one first
+	 *
+	 * @param bits   value holding the bits to be written
+	 * @param length number of bits to be written
+	 * @throws IOException if the stream fails
+	 * @requires {@code 0 <= length && length <= 64}
+	 */
+	void write(long bits, int length) throws IOException {
+		if(length > 56) {
+			write(bits >>> 32, length - 32);
+			write(bits, 32);
+			return;
+		}
+		if(length == 0) {
+			return;
+		}
+		accumulator = (accumulator << length) | (bits & ((1L << length) - 1));
+		pendingBits += length;
+		bitLength += length;
+		while(pendingBits >= 8) {
+			pendingBits -= 8;
+			if(size == buffer.length) {
+				out.write(buffer, 0, size);
+				size = 0;
+			}
+			buffer[size++] = (byte) (accumulator >>> pendingBits);
+		}
+	}
+
+	/**
+	 * Returns the number of bits written
+	 *
+	 * @return the number of bits written
+	 */
+	long bitLength() {
+		return bitLength;
+	}
+
+	/**
+	 * This method pads the last byte with zeros and writes every buffered byte to the stream.
+	 * Bits written afterwards start on a new byte.
+	 *
+	 * @throws IOException if the stream fails
+	 */
+	void flush() throws IOException {
+		if(pendingBits > 0) {
+			int padding = 8 - pendingBits;
+			write(0, padding);
+			bitLength -= padding;
+		}
+		out.write(buffer, 0, size);
+		size = 0;
+	}
+}
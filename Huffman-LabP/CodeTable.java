@@ -0,0 +1,379 @@
+package project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class stores a prefix code as a pair (bits, length) for each symbol, indexed by
+ * the symbol value, so that encoders can look codes up without boxing or parsing strings.
+ * 
+ * A canonical code is fully defined by the length of each code: codes are given in
+ * increasing order of (length, symbol). Only canonical codes can be written as a header,
+ * which holds just the symbols and their lengths.
+ *
+ * @author fc59858 Madalena Machado
+ *
+ */
+public class CodeTable {
+
+	/**
+	 * Length stored for symbols without a code
+	 */
+	public static final int ABSENT = -1;
+
+	/**
+	 * Maximum length of a code, in bits
+	 */
+	public static final int MAX_CODE_LENGTH = 64;
+
+	// every char and the escape symbol of AdaptiveHuffman
+	private static final int MAX_HEADER_SYMBOLS = Character.MAX_VALUE + 2;
+
+	private final int[] lengths;
+	private final long[] bits;
+	private final int[] symbols;
+	private final int maxLength;
+	private final boolean canonical;
+
+	/**
+	 * This constructor creates a table from the code of each symbol
+	 *
+	 * @param lengths length of the code of each symbol, or ABSENT
+	 * @param bits    bits of the code of each symbol, aligned to the right
+	 * @requires {@code lengths.length == bits.length}
+	 */
+	CodeTable(int[] lengths, long[] bits) {
+		this(lengths, bits, false);
+	}
+
+	/**
+	 * This constructor creates a table from the code of each symbol
+	 *
+	 * @param lengths   length of the code of each symbol, or ABSENT
+	 * @param bits      bits of the code of each symbol, aligned to the right
+	 * @param canonical true if the codes were assigned by canonical
+	 * @requires {@code lengths.length == bits.length}
+	 */
+	private CodeTable(int[] lengths, long[] bits, boolean canonical) {
+		this.lengths = lengths;
+		this.bits = bits;
+		this.canonical = canonical;
+		int count = 0;
+		int max = 0;
+		for(int s = 0; s < lengths.length; s++) {
+			if(lengths[s] != ABSENT) {
+				count++;
+				max = Math.max(max, lengths[s]);
+			}
+		}
+		this.symbols = new int[count];
+		int j = 0;
+		for(int s = 0; s < lengths.length; s++) {
+			if(lengths[s] != ABSENT) {
+				symbols[j++] = s;
+			}
+		}
+		this.maxLength = max;
+	}
+
+	/**
+	 * This method creates a table from a HashMap of codes written as '0'/'1' strings
+	 *
+	 * @param codes a HashMap containing the code for each character
+	 * @return a table with the same codes
+	 * @throws IllegalArgumentException if a code is longer than MAX_CODE_LENGTH or has other digits
+	 */
+	public static CodeTable fromCodes(Map<Character, String> codes) {
+		int alphabet = 0;
+		for(Character c : codes.keySet()) {
+			alphabet = Math.max(alphabet, c + 1);
+		}
+		int[] lengths = new int[alphabet];
+		long[] bits = new long[alphabet];
+		Arrays.fill(lengths, ABSENT);
+
+		for(Map.Entry<Character, String> entry : codes.entrySet()) {
+			String code = entry.getValue();
+			if(code.length() > MAX_CODE_LENGTH) {
+				throw new IllegalArgumentException("code for " + entry.getKey() + " is longer than " + MAX_CODE_LENGTH + " bits");
+			}
+			long value = 0;
+			for(int i = 0; i < code.length(); i++) {
+				char digit = code.charAt(i);
+				if(digit != '0' && digit != '1') {
+					throw new IllegalArgumentException("code for " + entry.getKey() + " is not binary: " + code);
+				}
+				value = (value << 1) | (digit - '0');
+			}
+			lengths[entry.getKey()] = code.length();
+			bits[entry.getKey()] = value;
+		}
+		return new CodeTable(lengths, bits);
+	}
+
+	/**
+	 * This method creates a canonical code from the length of the code of each symbol
+	 *
+	 * @param codeLengths length of the code of each symbol, indexed by symbol, with 0 for
+	 *                    symbols without a code
+	 * @return the canonical code with the given lengths
+	 * @throws IllegalArgumentException if a length is out of range or the lengths do not fit a prefix code
+	 */
+	public static CodeTable canonical(int[] codeLengths) {
+		int[] count = new int[MAX_CODE_LENGTH + 1];
+		for(int s = 0; s < codeLengths.length; s++) {
+			if(codeLengths[s] < 0 || codeLengths[s] > MAX_CODE_LENGTH) {
+				throw new IllegalArgumentException("invalid code length " + codeLengths[s] + " for symbol " + s);
+			}
+			count[codeLengths[s]]++;
+		}
+		count[0] = 0;
+
+		// first code of each length, checking that no length runs out of codes
+		long[] next = new long[MAX_CODE_LENGTH + 1];
+		long code = 0;
+		long free = 1;
+		for(int length = 1; length <= MAX_CODE_LENGTH; length++) {
+			code = (code + count[length - 1]) << 1;
+			next[length] = code;
+			free = Math.min(2 * free, Integer.MAX_VALUE) - count[length];
+			if(free < 0) {
+				throw new IllegalArgumentException("too many codes of length " + length);
+			}
+		}
+
+		int alphabet = codeLengths.length;
+		while(alphabet > 0 && codeLengths[alphabet - 1] == 0) {
+			alphabet--;
+		}
+		int[] lengths = new int[alphabet];
+		long[] bits = new long[alphabet];
+		Arrays.fill(lengths, ABSENT);
+		for(int s = 0; s < alphabet; s++) {
+			int length = codeLengths[s];
+			if(length > 0) {
+				lengths[s] = length;
+				bits[s] = next[length]++;
+			}
+		}
+		return new CodeTable(lengths, bits, true);
+	}
+
+	/**
+	 * This method reads a canonical code from a header written by writeHeader
+	 *
+	 * @param in source stream
+	 * @return the canonical code described by the header
+	 * @throws IOException if the stream fails, ends before the header does, or the header
+	 *                     is malformed or does not describe a prefix code
+	 */
+	public static CodeTable readHeader(InputStream in) throws IOException {
+		int count = readVarint(in);
+		if(count < 0 || count > MAX_HEADER_SYMBOLS) {
+			throw new IOException("header with " + Integer.toUnsignedString(count) + " symbols");
+		}
+		int[] symbols = new int[count];
+		int[] codeLengths = new int[count];
+		long symbol = -1;
+		for(int i = 0; i < count; i++) {
+			// gaps are unsigned, so symbols only grow and cannot repeat
+			symbol += (readVarint(in) & 0xFFFFFFFFL) + 1;
+			if(symbol >= MAX_HEADER_SYMBOLS) {
+				throw new IOException("header symbol " + symbol + " out of range");
+			}
+			int length = in.read();
+			if(length < 0) {
+				throw new EOFException("header ends after " + i + " of " + count + " symbols");
+			}
+			if(length == 0 || length > MAX_CODE_LENGTH) {
+				throw new IOException("code length " + length + " for symbol " + symbol);
+			}
+			symbols[i] = (int) symbol;
+			codeLengths[i] = length;
+		}
+		int[] bySymbol = new int[count == 0 ? 0 : (int) symbol + 1];
+		for(int i = 0; i < count; i++) {
+			bySymbol[symbols[i]] = codeLengths[i];
+		}
+		try {
+			return canonical(bySymbol);
+		} catch (IllegalArgumentException e) {
+			throw new IOException("header does not describe a prefix code: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * This method writes the symbols and their code lengths, from which readHeader rebuilds
+	 * this code. Each symbol is stored as the gap to the previous one.
+	 *
+	 * @param out destination stream
+	 * @throws IOException if the stream fails
+	 * @throws IllegalStateException if this code is not canonical
+	 */
+	public void writeHeader(OutputStream out) throws IOException {
+		if(!canonical) {
+			throw new IllegalStateException("only canonical codes can be written as a header");
+		}
+		writeVarint(out, symbols.length);
+		int previous = -1;
+		for(int s : symbols) {
+			writeVarint(out, s - previous - 1);
+			out.write(lengths[s]);
+			previous = s;
+		}
+	}
+
+	/**
+	 * Returns the header written by writeHeader
+	 *
+	 * @return a new array with the header
+	 * @throws IllegalStateException if this code is not canonical
+	 */
+	public byte[] toHeader() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(2 * symbols.length + 4);
+		try {
+			writeHeader(out);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Verifies if the codes were assigned in canonical order
+	 *
+	 * @return true if this code is canonical and false otherwise
+	 */
+	public boolean isCanonical() {
+		return canonical;
+	}
+
+	/**
+	 * Verifies if the given symbol has a code
+	 *
+	 * @param symbol symbol value
+	 * @return true if the symbol has a code and false otherwise
+	 */
+	public boolean contains(int symbol) {
+		return getLength(symbol) != ABSENT;
+	}
+
+	/**
+	 * Returns the length of the code of the given symbol
+	 *
+	 * @param symbol symbol value
+	 * @return the code length in bits, or ABSENT if the symbol has no code
+	 */
+	public int getLength(int symbol) {
+		return symbol >= 0 && symbol < lengths.length ? lengths[symbol] : ABSENT;
+	}
+
+	/**
+	 * Returns the bits of the code of the given symbol, aligned to the right
+	 *
+	 * @param symbol symbol value
+	 * @return the code bits
+	 * @requires {@code contains(symbol)}
+	 */
+	public long getBits(int symbol) {
+		return bits[symbol];
+	}
+
+	/**
+	 * Returns the number of symbols with a code
+	 *
+	 * @return the number of symbols with a code
+	 */
+	public int size() {
+		return symbols.length;
+	}
+
+	/**
+	 * Returns the length of the longest code
+	 *
+	 * @return the length of the longest code, in bits
+	 */
+	public int maxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * Returns the symbols with a code, in ascending order
+	 *
+	 * @return a new array with the symbols with a code
+	 */
+	public int[] symbols() {
+		return symbols.clone();
+	}
+
+	/**
+	 * Returns the code of the given symbol as a '0'/'1' string
+	 *
+	 * @param symbol symbol value
+	 * @return the code as text
+	 * @requires {@code contains(symbol)}
+	 */
+	public String codeToString(int symbol) {
+		char[] digits = new char[lengths[symbol]];
+		for(int i = 0; i < digits.length; i++) {
+			digits[i] = (char) ('0' + ((bits[symbol] >>> (digits.length - 1 - i)) & 1));
+		}
+		return new String(digits);
+	}
+
+	/**
+	 * This method converts this table into a HashMap of codes written as '0'/'1' strings
+	 *
+	 * @return a HashMap containing the code for each character
+	 */
+	public HashMap<Character, String> toCodes() {
+		HashMap<Character, String> codes = new HashMap<>();
+		for(int s : symbols) {
+			codes.put((char) s, codeToString(s));
+		}
+		return codes;
+	}
+
+	/**
+	 * This method writes a non-negative number in groups of seven bits, lowest first
+	 *
+	 * @param out   destination stream
+	 * @param value number to be written
+	 * @throws IOException if the stream fails
+	 */
+	static void writeVarint(OutputStream out, int value) throws IOException {
+		while((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * This method reads a number written by writeVarint
+	 *
+	 * @param in source stream
+	 * @return the number read
+	 * @throws IOException if the stream fails or ends before the number does
+	 */
+	static int readVarint(InputStream in) throws IOException {
+		int value = 0;
+		for(int shift = 0; shift < 32; shift += 7) {
+			int b = in.read();
+			if(b < 0) {
+				throw new EOFException("stream ends inside a number");
+			}
+			value |= (b & 0x7F) << shift;
+			if((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("number longer than 32 bits");
+	}
+}
@@ -0,0 +1,213 @@
+package project;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the most recently used code tables, so that corpora with a character
+ * distribution already seen skip the tree build. Tables are found either by a key given by
+ * the caller or by the character counts themselves: counts are hashed into a fingerprint,
+ * and a hit is only reported when the stored counts are the same.
+ *
+ * The cache holds at most capacity tables and drops the least recently used one when full.
+ * All methods are synchronized.
+ *
+ * @author fc59858 Madalena Machado
+ *
+ */
+public class CodeTableCache {
+
+	private final int capacity;
+	private final LinkedHashMap<Object, Entry> tables;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * This constructor creates an empty cache
+	 *
+	 * @param capacity maximum number of tables kept
+	 * @requires {@code capacity > 0}
+	 */
+	public CodeTableCache(int capacity) {
+		this.capacity = capacity;
+		this.tables = new LinkedHashMap<Object, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+				if(size() > CodeTableCache.this.capacity) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Returns the canonical code table for the corpus, building it only if no table for the
+	 * same character counts is cached
+	 *
+	 * @param corpus text message
+	 * @return the canonical code of each character in the corpus
+	 */
+	public CodeTable getTable(CharSequence corpus) {
+		return getTable(Huffman.countFrequencies(corpus));
+	}
+
+	/**
+	 * Returns the canonical code table for the given character counts, building it only if
+	 * no table for the same counts is cached
+	 *
+	 * @param frequencies number of times each character appears, indexed by character
+	 * @return the canonical code of each character that appears
+	 */
+	public synchronized CodeTable getTable(int[] frequencies) {
+		int[] counts = trim(frequencies);
+		Fingerprint key = new Fingerprint(counts);
+		Entry entry = tables.get(key);
+		if(entry != null && Arrays.equals(entry.frequencies, counts)) {
+			hits++;
+			return entry.table;
+		}
+		misses++;
+		CodeTable table = Huffman.canonicalTable(counts);
+		tables.put(key, new Entry(table, counts));
+		return table;
+	}
+
+	/**
+	 * Returns the table cached under the given key, building it from the corpus on a miss.
+	 * The caller is responsible for using the same key only for corpora whose distribution
+	 * is close enough to share a table.
+	 *
+	 * @param key    key chosen by the caller, such as a tenant or template name
+	 * @param corpus text message used to build the table on a miss
+	 * @return the code table cached under the key
+	 */
+	public synchronized CodeTable getTable(String key, CharSequence corpus) {
+		Entry entry = tables.get(key);
+		if(entry != null) {
+			hits++;
+			return entry.table;
+		}
+		misses++;
+		CodeTable table = Huffman.canonicalTable(Huffman.countFrequencies(corpus));
+		tables.put(key, new Entry(table, null));
+		return table;
+	}
+
+	/**
+	 * Returns the number of lookups answered from the cache
+	 *
+	 * @return the number of hits
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Returns the number of lookups that had to build a table
+	 *
+	 * @return the number of misses
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the number of tables dropped to make room for others
+	 *
+	 * @return the number of evictions
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * Returns the number of tables kept
+	 *
+	 * @return the number of tables kept
+	 */
+	public synchronized int size() {
+		return tables.size();
+	}
+
+	/**
+	 * This method removes every table. The counters are kept.
+	 */
+	public synchronized void clear() {
+		tables.clear();
+	}
+
+	/**
+	 * Returns the counts without the zeros at the end, so that the same distribution gives
+	 * the same array whatever the size of the array it was counted in
+	 *
+	 * @param frequencies number of times each character appears
+	 * @return the counts up to the last character that appears
+	 */
+	private static int[] trim(int[] frequencies) {
+		int length = frequencies.length;
+		while(length > 0 && frequencies[length - 1] == 0) {
+			length--;
+		}
+		return Arrays.copyOf(frequencies, length);
+	}
+
+	/**
+	 * This class is a 64-bit hash of character counts, used as the key of a cached table
+	 */
+	private static class Fingerprint {
+
+		private final long hash;
+
+		/**
+		 * This constructor hashes the given counts
+		 *
+		 * @param counts number of times each character appears
+		 */
+		private Fingerprint(int[] counts) {
+			long h = 0x9E3779B97F4A7C15L;
+			for(int c = 0; c < counts.length; c++) {
+				if(counts[c] != 0) {
+					h = (h ^ (((long) c << 32) | (counts[c] & 0xFFFFFFFFL))) * 0xBF58476D1CE4E5B9L;
+					h ^= h >>> 31;
+				}
+			}
+			this.hash = h;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Fingerprint && ((Fingerprint) other).hash == hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(hash);
+		}
+	}
+
+	/**
+	 * This class holds a cached table and the counts it was built from
+	 */
+	private static class Entry {
+
+		private final CodeTable table;
+		private final int[] frequencies;
+
+		/**
+		 * This constructor creates an entry
+		 *
+		 * @param table       cached table
+		 * @param frequencies counts the table was built from, or null for a key given by the caller
+		 */
+		private Entry(CodeTable table, int[] frequencies) {
+			this.table = table;
+			this.frequencies = frequencies;
+		}
+	}
+}
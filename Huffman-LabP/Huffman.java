@@ -1,5 +1,8 @@
 package project;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.PriorityQueue;
@@ -13,6 +16,8 @@ import java.util.TreeMap;
  *
  */
 public class Huffman {
+
+	private static final int LATIN1 = 256;
 	
 	/**
 	 * This method takes a string corpus and generates a Huffman encoding tree from it. 
@@ -25,6 +30,101 @@ public class Huffman {
 		return treeFromCorpus(corpus).getHuffmanCodes();
 	}
 	
+	/**
+	 * This method generates canonical Huffman codes for the corpus. The code lengths come
+	 * from HuffmanBuilder, and the codes themselves are assigned in order of (length,
+	 * character), so the same counts always give the same codes.
+	 * 
+	 * @param corpus message to be coded
+	 * @return a HashMap containing the canonical Huffman codes for each character in the corpus
+	 */
+	public static HashMap<Character, String> getCanonicalCodes(String corpus) {
+		return canonicalTable(corpus).toCodes();
+	}
+
+	/**
+	 * This method generates the canonical Huffman code table for the corpus. The table can
+	 * be written with CodeTable.writeHeader and rebuilt with CodeTable.readHeader.
+	 * 
+	 * @param corpus message to be coded
+	 * @return the canonical code of each character in the corpus
+	 */
+	public static CodeTable canonicalTable(String corpus) {
+		return canonicalTable(countFrequencies(corpus));
+	}
+
+	/**
+	 * This method generates the canonical Huffman code table for the corpus and records the
+	 * counts and the time spent in stats
+	 * 
+	 * @param corpus message to be coded
+	 * @param stats statistics to be filled
+	 * @return the canonical code of each character in the corpus
+	 */
+	public static CodeTable canonicalTable(CharSequence corpus, HuffmanStats stats) {
+		long start = System.nanoTime();
+		int[] frequencies = countFrequencies(corpus);
+		long counted = System.nanoTime();
+		CodeTable table = canonicalTable(frequencies);
+		stats.recordBuild(frequencies, table, counted - start, System.nanoTime() - counted);
+		return table;
+	}
+
+	/**
+	 * This method generates the canonical Huffman code table for the given character counts
+	 * 
+	 * @param frequencies number of times each character appears, indexed by character, as
+	 *                    given by countFrequencies
+	 * @return the canonical code of each character that appears
+	 * @requires {@code frequencies} has at least one positive count
+	 */
+	public static CodeTable canonicalTable(int[] frequencies) {
+		return CodeTable.canonical(HuffmanBuilder.codeLengths(frequencies));
+	}
+
+	/**
+	 * This method generates a canonical code table for the given character counts with no
+	 * code longer than maxLength bits. The codes are the best ones under that limit; the size
+	 * they cost over plain Huffman codes is given by lengthLimitLoss.
+	 * 
+	 * @param frequencies number of times each character appears, indexed by character
+	 * @param maxLength longest code allowed, such as HuffmanBuilder.DEFLATE_MAX_LENGTH
+	 * @return the canonical code of each character that appears
+	 * @throws IllegalArgumentException if there are more than 2^maxLength characters
+	 * @requires {@code 0 < maxLength && maxLength <= CodeTable.MAX_CODE_LENGTH}
+	 */
+	public static CodeTable canonicalTable(int[] frequencies, int maxLength) {
+		return CodeTable.canonical(HuffmanBuilder.limitedCodeLengths(toLong(frequencies), maxLength));
+	}
+
+	/**
+	 * This method tells how much larger the encoded corpus gets when codes are limited to
+	 * maxLength bits, compared to plain Huffman codes
+	 * 
+	 * @param frequencies number of times each character appears, indexed by character
+	 * @param maxLength longest code allowed
+	 * @return the extra size as a fraction of the Huffman size, 0 when the limit costs nothing
+	 * @throws IllegalArgumentException if there are more than 2^maxLength characters
+	 * @requires {@code 0 < maxLength && maxLength <= CodeTable.MAX_CODE_LENGTH}
+	 */
+	public static double lengthLimitLoss(int[] frequencies, int maxLength) {
+		long[] counts = toLong(frequencies);
+		long optimal = HuffmanBuilder.totalBits(counts, HuffmanBuilder.codeLengths(counts));
+		long limited = HuffmanBuilder.totalBits(counts, HuffmanBuilder.limitedCodeLengths(counts, maxLength));
+		return optimal == 0 ? 0 : (double) (limited - optimal) / optimal;
+	}
+
+	/**
+	 * This method generates the canonical Huffman code table for the given character counts
+	 * 
+	 * @param frequencies number of times each character appears, indexed by character
+	 * @return the canonical code of each character that appears
+	 * @requires {@code frequencies} has at least one positive count
+	 */
+	static CodeTable canonicalTable(long[] frequencies) {
+		return CodeTable.canonical(HuffmanBuilder.codeLengths(frequencies));
+	}
+	
 	/**
 	 * This method converts a HashMap containing character codes into a string representation, with the codes sorted by character value.
 	 * 
@@ -62,7 +162,98 @@ public class Huffman {
 		return sb.toString();
 		
 	}
-	
+
+	/**
+	 * This method encodes the message into packed bits. The string given by encode is
+	 * available as the toString of the result.
+	 *
+	 * @param message text to be coded
+	 * @param codes hashmap containing the code for each character from the text
+	 * @return the encoded message, packed eight bits to a byte
+	 * @throws IllegalArgumentException if a character of the message has no code
+	 */
+	public static BitBuffer encodeBits(String message, HashMap<Character, String> codes) {
+		return encodeBits(message, CodeTable.fromCodes(codes));
+	}
+
+	/**
+	 * This method encodes the message into packed bits
+	 *
+	 * @param message text to be coded
+	 * @param table code of each character from the text
+	 * @return the encoded message, packed eight bits to a byte
+	 * @throws IllegalArgumentException if a character of the message has no code
+	 */
+	public static BitBuffer encodeBits(CharSequence message, CodeTable table) {
+		BitBuffer out = new BitBuffer(message.length() / 2);
+		for(int i = 0; i < message.length(); i++) {
+			char c = message.charAt(i);
+			int length = table.getLength(c);
+			if(length == CodeTable.ABSENT) {
+				throw new IllegalArgumentException("no code for character " + (int) c + " at position " + i);
+			}
+			out.write(table.getBits(c), length);
+		}
+		return out;
+	}
+
+	/**
+	 * This method encodes the message into packed bits and records the sizes and the time
+	 * spent in stats, which then calls its listener
+	 *
+	 * @param message text to be coded
+	 * @param table code of each character from the text
+	 * @param stats statistics of the table build, to be completed
+	 * @return the encoded message, packed eight bits to a byte
+	 * @throws IllegalArgumentException if a character of the message has no code
+	 */
+	public static BitBuffer encodeBits(CharSequence message, CodeTable table, HuffmanStats stats) {
+		long start = System.nanoTime();
+		BitBuffer bits = encodeBits(message, table);
+		stats.recordEncode(message.length(), bits.bitLength(), System.nanoTime() - start);
+		return bits;
+	}
+
+	/**
+	 * This method encodes the message and writes the packed bits, followed by the
+	 * bit-length trailer, to the given stream
+	 *
+	 * @param message text to be coded
+	 * @param table code of each character from the text
+	 * @param out destination stream
+	 * @throws IOException if the stream fails
+	 * @throws IllegalArgumentException if a character of the message has no code
+	 */
+	public static void encode(CharSequence message, CodeTable table, OutputStream out) throws IOException {
+		encodeBits(message, table).writeTo(out);
+	}
+
+	/**
+	 * This method decodes packed bits back into the text they were encoded from
+	 *
+	 * @param bits encoded message
+	 * @param codes hashmap containing the code for each character from the text
+	 * @return the decoded text
+	 * @throws IllegalArgumentException if the bits are not a sequence of codes
+	 */
+	public static String decode(BitBuffer bits, HashMap<Character, String> codes) {
+		return new HuffmanDecoder(CodeTable.fromCodes(codes)).decode(bits);
+	}
+
+	/**
+	 * This method widens character counts to long
+	 * 
+	 * @param frequencies number of times each character appears
+	 * @return the same counts as longs
+	 */
+	private static long[] toLong(int[] frequencies) {
+		long[] counts = new long[frequencies.length];
+		for(int c = 0; c < frequencies.length; c++) {
+			counts[c] = frequencies[c];
+		}
+		return counts;
+	}
+
 	/**
 	 * This method makes a tree from the given code
 	 * 
@@ -79,7 +270,7 @@ public class Huffman {
 	  * @param corpus text message
 	  * @return a frequency table with the amount of times a character appears
 	  */
-	private static HashMap<Character, Integer> frequencyTable(String corpus) {
+	static HashMap<Character, Integer> frequencyTable(String corpus) {
 		HashMap <Character, Integer> map = new HashMap<>();
 		for(int i = 0; i < corpus.length(); i++) {
 			Character c = corpus.charAt(i);
@@ -92,6 +283,34 @@ public class Huffman {
 		}
 		return map;
 	}
+
+	/**
+	 * This method counts how many times each character appears in the corpus, in an array
+	 * indexed by character. No object is created per character: the array has 256 positions
+	 * and grows once to cover every char value when a character above 255 shows up.
+	 * 
+	 * @param corpus text message
+	 * @return the number of times each character appears, indexed by character
+	 */
+	public static int[] countFrequencies(CharSequence corpus) {
+		int[] counts = new int[LATIN1];
+		int i = 0;
+		int n = corpus.length();
+		for(; i < n; i++) {
+			char c = corpus.charAt(i);
+			if(c >= LATIN1) {
+				break;
+			}
+			counts[c]++;
+		}
+		if(i < n) {
+			counts = Arrays.copyOf(counts, Character.MAX_VALUE + 1);
+			for(; i < n; i++) {
+				counts[corpus.charAt(i)]++;
+			}
+		}
+		return counts;
+	}
 	
 	/**
 	 * This private class generates a tree
@@ -133,34 +352,52 @@ public class Huffman {
 		}
 		/**
 		 * This method generates and returns a HashMap containing the Huffman codes for each character in the encoding tree.
+		 * The tree is walked with an explicit stack, so deep trees cannot overflow the call stack,
+		 * and the code of the current path is kept in a single char array.
 		 * 
 		 * @return  a HashMap containing the Huffman codes for each character in the encoding tree
 		 */
 		private HashMap<Character, String> getHuffmanCodes() {
 			HashMap<Character, String> codes = new HashMap<>();
 
-			getHuffmanCodesAux(root, "", codes);
+			HuffmanNode[] nodes = new HuffmanNode[16];
+			int[] depths = new int[16];
+			char[] bits = new char[16];
+			char[] path = new char[16];
+			int top = 0;
+			nodes[top] = root;
+			depths[top++] = 0;
+			while(top > 0) {
+				top--;
+				HuffmanNode node = nodes[top];
+				int depth = depths[top];
+				if(depth > 0) {
+					path[depth - 1] = bits[top];
+				}
+				if(node.isLeaf()) {
+					codes.put(node.c, new String(path, 0, depth));
+				}
+				else {
+					if(top + 2 > nodes.length) {
+						nodes = Arrays.copyOf(nodes, nodes.length * 2);
+						depths = Arrays.copyOf(depths, depths.length * 2);
+						bits = Arrays.copyOf(bits, bits.length * 2);
+					}
+					if(depth == path.length) {
+						path = Arrays.copyOf(path, path.length * 2);
+					}
+					// the right child is pushed first so the left one is visited first
+					nodes[top] = node.right;
+					depths[top] = depth + 1;
+					bits[top++] = '1';
+					nodes[top] = node.left;
+					depths[top] = depth + 1;
+					bits[top++] = '0';
+				}
+			}
 
 			return codes;
 		}
-		
-		/**
-		 * This method generates huffman codes out of the huffman root node
-		 * 
-		 * @param node current node being traversed
-		 * @param code code generated
-		 * @param codes  a HashMap containing the Huffman codes for each character
-		 */
-		private void getHuffmanCodesAux(HuffmanNode node, String code, HashMap<Character, String> codes) {
-			//fazer com recursão 
-			if(node.isLeaf()){
-				codes.put(node.c, code);
-			}
-			else {
-				getHuffmanCodesAux(node.left, code + "0" , codes);
-				getHuffmanCodesAux(node.right, code + "1" , codes);
-			}		
-		}
 	}
 	
 	/**
@@ -0,0 +1,245 @@
+package project;
+
+import java.util.Arrays;
+
+/**
+ * This class computes the length of the Huffman code of each symbol without building a
+ * tree of objects. Symbols are sorted by frequency and merged with the two-queue method:
+ * leaves are taken in order from the sorted array and merged nodes come out in order of
+ * weight, so the two lightest nodes are always at the front of one of the queues. The tree
+ * is kept as an array of parent positions and the depths are found in one backwards pass.
+ *
+ * @author fc59858 Madalena Machado
+ *
+ */
+public class HuffmanBuilder {
+
+	/**
+	 * Longest code allowed by DEFLATE, a common limit for length-limited codes
+	 */
+	public static final int DEFLATE_MAX_LENGTH = 15;
+
+	// symbols are packed below the frequency in the sort keys
+	private static final int SYMBOL_BITS = 17;
+	private static final long MAX_PACKED_FREQUENCY = Long.MAX_VALUE >>> SYMBOL_BITS;
+
+	/**
+	 * This method computes the length of the Huffman code of each symbol. Among symbols with
+	 * the same frequency the smaller one is merged first, so the result does not depend on
+	 * anything but the counts. A single symbol gets a code of one bit.
+	 *
+	 * @param frequencies number of times each symbol appears, indexed by symbol
+	 * @return the code length of each symbol, indexed by symbol, with 0 for absent ones
+	 * @requires {@code frequencies.length <= 1 << 17} and no count is negative
+	 */
+	public static int[] codeLengths(long[] frequencies) {
+		int[] lengths = new int[frequencies.length];
+		int[] symbols = sortedSymbols(frequencies);
+		int n = symbols.length;
+		if(n == 0) {
+			return lengths;
+		}
+		if(n == 1) {
+			lengths[symbols[0]] = 1;
+			return lengths;
+		}
+
+		// nodes 0..n-1 are the leaves in order of weight, nodes n..2n-2 are merged in order
+		long[] weight = new long[2 * n - 1];
+		int[] parent = new int[2 * n - 1];
+		for(int i = 0; i < n; i++) {
+			weight[i] = frequencies[symbols[i]];
+		}
+		int leaf = 0;
+		int merged = n;
+		for(int node = n; node < 2 * n - 1; node++) {
+			int first;
+			if(merged == node || (leaf < n && weight[leaf] <= weight[merged])) {
+				first = leaf++;
+			}
+			else {
+				first = merged++;
+			}
+			int second;
+			if(merged == node || (leaf < n && weight[leaf] <= weight[merged])) {
+				second = leaf++;
+			}
+			else {
+				second = merged++;
+			}
+			weight[node] = weight[first] + weight[second];
+			parent[first] = node;
+			parent[second] = node;
+		}
+
+		// parents come after their children, so one backwards pass turns parents into depths
+		int root = 2 * n - 2;
+		parent[root] = 0;
+		for(int node = root - 1; node >= 0; node--) {
+			parent[node] = parent[parent[node]] + 1;
+		}
+		for(int i = 0; i < n; i++) {
+			lengths[symbols[i]] = parent[i];
+		}
+		return lengths;
+	}
+
+	/**
+	 * This method computes the length of the Huffman code of each symbol
+	 *
+	 * @param frequencies number of times each symbol appears, indexed by symbol
+	 * @return the code length of each symbol, indexed by symbol, with 0 for absent ones
+	 */
+	public static int[] codeLengths(int[] frequencies) {
+		long[] counts = new long[frequencies.length];
+		for(int s = 0; s < frequencies.length; s++) {
+			counts[s] = frequencies[s];
+		}
+		return codeLengths(counts);
+	}
+
+	/**
+	 * This method computes optimal code lengths with no code longer than maxLength, using
+	 * the package-merge method. Each level merges the symbols with pairs ("packages") of the
+	 * items of the level below; taking the 2n - 2 lightest items of the top level, and the
+	 * items they are made of, the length of a code is the number of levels that include its
+	 * symbol. When plain Huffman codes already fit, they are returned as they are.
+	 *
+	 * @param frequencies number of times each symbol appears, indexed by symbol
+	 * @param maxLength   longest code allowed
+	 * @return the code length of each symbol, indexed by symbol, with 0 for absent ones
+	 * @throws IllegalArgumentException if there are more than 2^maxLength symbols
+	 * @requires {@code 0 < maxLength && maxLength <= CodeTable.MAX_CODE_LENGTH}
+	 */
+	public static int[] limitedCodeLengths(long[] frequencies, int maxLength) {
+		int[] lengths = codeLengths(frequencies);
+		int longest = 0;
+		for(int length : lengths) {
+			longest = Math.max(longest, length);
+		}
+		if(longest <= maxLength) {
+			return lengths;
+		}
+
+		int[] symbols = sortedSymbols(frequencies);
+		int n = symbols.length;
+		if(maxLength < 63 && n > 1L << maxLength) {
+			throw new IllegalArgumentException(n + " symbols do not fit in codes of " + maxLength + " bits");
+		}
+		long[] leaves = new long[n];
+		for(int i = 0; i < n; i++) {
+			leaves[i] = frequencies[symbols[i]];
+		}
+
+		// isPackage[level][k] tells whether the k-th item of the level is a package or a leaf;
+		// level 0 is the deepest one and holds only the leaves
+		boolean[][] isPackage = new boolean[maxLength][];
+		isPackage[0] = new boolean[n];
+		long[] weights = leaves.clone();
+		for(int level = 1; level < maxLength; level++) {
+			int packages = weights.length / 2;
+			long[] merged = new long[n + packages];
+			boolean[] kinds = new boolean[n + packages];
+			int leaf = 0;
+			int pack = 0;
+			for(int k = 0; k < merged.length; k++) {
+				long packWeight = pack < packages ? weights[2 * pack] + weights[2 * pack + 1] : Long.MAX_VALUE;
+				if(leaf < n && leaves[leaf] <= packWeight) {
+					merged[k] = leaves[leaf++];
+				}
+				else {
+					merged[k] = packWeight;
+					kinds[k] = true;
+					pack++;
+				}
+			}
+			weights = merged;
+			isPackage[level] = kinds;
+		}
+
+		// every leaf in a taken prefix adds one bit to its code; packages take items below
+		int[] depth = new int[n];
+		int take = 2 * n - 2;
+		for(int level = maxLength - 1; level >= 0; level--) {
+			int leaf = 0;
+			int packages = 0;
+			for(int k = 0; k < take; k++) {
+				if(isPackage[level][k]) {
+					packages++;
+				}
+				else {
+					depth[leaf++]++;
+				}
+			}
+			take = 2 * packages;
+		}
+
+		Arrays.fill(lengths, 0);
+		for(int i = 0; i < n; i++) {
+			lengths[symbols[i]] = depth[i];
+		}
+		return lengths;
+	}
+
+	/**
+	 * Returns the number of bits taken by the codes of all the symbols
+	 *
+	 * @param frequencies number of times each symbol appears, indexed by symbol
+	 * @param lengths     code length of each symbol, indexed by symbol
+	 * @return the sum of frequency times code length
+	 */
+	public static long totalBits(long[] frequencies, int[] lengths) {
+		long bits = 0;
+		for(int s = 0; s < Math.min(frequencies.length, lengths.length); s++) {
+			bits += frequencies[s] * lengths[s];
+		}
+		return bits;
+	}
+
+	/**
+	 * Returns the symbols that appear, sorted by frequency and then by symbol. Frequency and
+	 * symbol are packed into one long so a primitive sort is enough.
+	 *
+	 * @param frequencies number of times each symbol appears, indexed by symbol
+	 * @return the sorted symbols
+	 */
+	static int[] sortedSymbols(long[] frequencies) {
+		int n = 0;
+		long max = 0;
+		for(long f : frequencies) {
+			if(f > 0) {
+				n++;
+				max = Math.max(max, f);
+			}
+		}
+		int[] symbols = new int[n];
+		if(max <= MAX_PACKED_FREQUENCY) {
+			long[] keys = new long[n];
+			int j = 0;
+			for(int s = 0; s < frequencies.length; s++) {
+				if(frequencies[s] > 0) {
+					keys[j++] = (frequencies[s] << SYMBOL_BITS) | s;
+				}
+			}
+			Arrays.sort(keys);
+			for(int i = 0; i < n; i++) {
+				symbols[i] = (int) (keys[i] & ((1 << SYMBOL_BITS) - 1));
+			}
+			return symbols;
+		}
+
+		// counts too large to pack: sort boxed positions, which is stable for equal counts
+		Integer[] order = new Integer[n];
+		int j = 0;
+		for(int s = 0; s < frequencies.length; s++) {
+			if(frequencies[s] > 0) {
+				order[j++] = s;
+			}
+		}
+		Arrays.sort(order, (a, b) -> Long.compare(frequencies[a], frequencies[b]));
+		for(int i = 0; i < n; i++) {
+			symbols[i] = order[i];
+		}
+		return symbols;
+	}
+}
@@ -0,0 +1,283 @@
+package project;
+
+import java.util.Arrays;
+
+/**
+ * This class decodes packed bits with a prefix code. Instead of walking the tree one bit
+ * at a time, it looks the next bits up in a precomputed table that resolves every code up
+ * to lookupBits long in a single step. Longer codes go through smaller second level tables.
+ *
+ * @author fc59858 Madalena Machado
+ *
+ */
+public class HuffmanDecoder {
+
+	/**
+	 * Default number of bits resolved by the first table lookup
+	 */
+	public static final int DEFAULT_LOOKUP_BITS = 10;
+
+	/**
+	 * Smallest number of bits that can be resolved by a table lookup
+	 */
+	public static final int MIN_LOOKUP_BITS = 8;
+
+	/**
+	 * Largest number of bits that can be resolved by a table lookup
+	 */
+	public static final int MAX_LOOKUP_BITS = 12;
+
+	// Each entry keeps the number of bits in its low 4 bits, a subtable flag in bit 4 and
+	// the symbol (or the offset of the subtable) in the remaining bits. Zero marks bits that
+	// start no code.
+	private static final int LENGTH_MASK = 0xF;
+	private static final int SUBTABLE = 0x10;
+	private static final int VALUE_SHIFT = 5;
+
+	private final CodeTable codes;
+	private final int lookupBits;
+	private final int rootBits;
+	private int[] table;
+	private int tableSize;
+
+	/**
+	 * This constructor creates a decoder for the given code with the default lookup width
+	 *
+	 * @param codes code of each symbol
+	 * @throws IllegalArgumentException if the code is not a prefix code with at least one bit per symbol
+	 */
+	public HuffmanDecoder(CodeTable codes) {
+		this(codes, DEFAULT_LOOKUP_BITS);
+	}
+
+	/**
+	 * This constructor creates a decoder for the given code
+	 *
+	 * @param codes      code of each symbol
+	 * @param lookupBits number of bits resolved by each table lookup
+	 * @throws IllegalArgumentException if the code is not a prefix code with at least one bit per
+	 *                                  symbol, or lookupBits is out of range
+	 */
+	public HuffmanDecoder(CodeTable codes, int lookupBits) {
+		if(lookupBits < MIN_LOOKUP_BITS || lookupBits > MAX_LOOKUP_BITS) {
+			throw new IllegalArgumentException("lookup bits must be between " + MIN_LOOKUP_BITS + " and " + MAX_LOOKUP_BITS);
+		}
+		if(codes.size() == 0) {
+			throw new IllegalArgumentException("empty code");
+		}
+		this.codes = codes;
+		this.lookupBits = lookupBits;
+
+		int[] symbols = sortByCode(codes);
+		if(codes.getLength(symbols[0]) == 0) {
+			throw new IllegalArgumentException("a code of zero bits cannot be decoded");
+		}
+		this.table = new int[1 << lookupBits];
+		this.rootBits = Math.min(lookupBits, codes.maxLength());
+		build(symbols, 0, symbols.length, 0, rootBits);
+	}
+
+	/**
+	 * Returns the code used by this decoder
+	 *
+	 * @return the code of each symbol
+	 */
+	public CodeTable getCodes() {
+		return codes;
+	}
+
+	/**
+	 * Returns the number of bits resolved by each table lookup
+	 *
+	 * @return the lookup width
+	 */
+	public int getLookupBits() {
+		return lookupBits;
+	}
+
+	/**
+	 * This method decodes all the bits of the given buffer
+	 *
+	 * @param bits encoded message
+	 * @return the decoded text
+	 * @throws IllegalArgumentException if the bits are not a sequence of codes
+	 */
+	public String decode(BitBuffer bits) {
+		return decode(bits.reader());
+	}
+
+	/**
+	 * This method decodes packed bits, without a trailer
+	 *
+	 * @param packed    encoded message, packed eight bits to a byte
+	 * @param bitLength number of valid bits
+	 * @return the decoded text
+	 * @throws IllegalArgumentException if the bits are not a sequence of codes
+	 */
+	public String decode(byte[] packed, long bitLength) {
+		if(bitLength > 8L * packed.length) {
+			throw new IllegalArgumentException("bit length " + bitLength + " exceeds " + packed.length + " bytes");
+		}
+		return decode(new BitReader(packed, 0, packed.length, bitLength));
+	}
+
+	/**
+	 * This method decodes every remaining code of the given reader
+	 *
+	 * @param in source of bits
+	 * @return the decoded text
+	 */
+	String decode(BitReader in) {
+		StringBuilder sb = new StringBuilder((int) Math.min(Integer.MAX_VALUE - 8, in.remaining() / 2));
+		while(in.remaining() > 0) {
+			sb.append((char) decodeSymbol(in));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * This method decodes the next symbol of the given reader
+	 *
+	 * @param in source of bits
+	 * @return the decoded symbol
+	 * @throws IllegalArgumentException if the next bits start no code or are truncated
+	 */
+	int decodeSymbol(BitReader in) {
+		int offset = 0;
+		int width = rootBits;
+		while(true) {
+			int entry = table[offset + (int) in.peek(width)];
+			if(entry == 0) {
+				throw new IllegalArgumentException("invalid code with " + in.remaining() + " bits left");
+			}
+			if((entry & SUBTABLE) == 0) {
+				in.skip(entry & LENGTH_MASK);
+				return entry >>> VALUE_SHIFT;
+			}
+			in.skip(width);
+			offset = entry >>> VALUE_SHIFT;
+			width = entry & LENGTH_MASK;
+		}
+	}
+
+	/**
+	 * This method fills a table for the codes in the given range, which share their first
+	 * consumed bits and are sorted by code
+	 *
+	 * @param symbols  symbols sorted by code
+	 * @param from     first symbol of the range
+	 * @param to       position after the last symbol of the range
+	 * @param consumed number of bits resolved by the previous tables
+	 * @param width    number of bits resolved by this table
+	 * @return the offset of the table
+	 */
+	private int build(int[] symbols, int from, int to, int consumed, int width) {
+		int offset = allocate(1 << width);
+		int i = from;
+		while(i < to) {
+			int symbol = symbols[i];
+			int rest = codes.getLength(symbol) - consumed;
+			long code = codes.getBits(symbol);
+			if(rest <= width) {
+				int start = (int) (code & ((1L << rest) - 1)) << (width - rest);
+				int entry = (symbol << VALUE_SHIFT) | rest;
+				for(int k = start; k < start + (1 << (width - rest)); k++) {
+					if(table[offset + k] != 0) {
+						throw new IllegalArgumentException("not a prefix code at symbol " + symbol);
+					}
+					table[offset + k] = entry;
+				}
+				i++;
+			}
+			else {
+				int index = index(symbol, consumed, width);
+				int j = i;
+				int longest = 0;
+				while(j < to && codes.getLength(symbols[j]) - consumed > width && index(symbols[j], consumed, width) == index) {
+					longest = Math.max(longest, codes.getLength(symbols[j]) - consumed - width);
+					j++;
+				}
+				if(table[offset + index] != 0) {
+					throw new IllegalArgumentException("not a prefix code at symbol " + symbol);
+				}
+				int subWidth = Math.min(lookupBits, longest);
+				int subOffset = build(symbols, i, j, consumed + width, subWidth);
+				table[offset + index] = (subOffset << VALUE_SHIFT) | SUBTABLE | subWidth;
+				i = j;
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * Returns the width bits of the code of the given symbol that follow the consumed ones
+	 *
+	 * @param symbol   symbol with a code longer than consumed + width
+	 * @param consumed number of bits resolved by the previous tables
+	 * @param width    number of bits wanted
+	 * @return the bits, aligned to the right
+	 */
+	private int index(int symbol, int consumed, int width) {
+		int shift = codes.getLength(symbol) - consumed - width;
+		return (int) ((codes.getBits(symbol) >>> shift) & ((1 << width) - 1));
+	}
+
+	/**
+	 * This method reserves room for a table at the end of the array
+	 *
+	 * @param entries number of entries of the table
+	 * @return the offset of the table
+	 */
+	private int allocate(int entries) {
+		if(tableSize + entries > table.length) {
+			table = Arrays.copyOf(table, Math.max(table.length << 1, tableSize + entries));
+		}
+		int offset = tableSize;
+		tableSize += entries;
+		return offset;
+	}
+
+	/**
+	 * Returns the symbols of the given code sorted by their bits, read from the left. For a
+	 * canonical code this is the order of (length, symbol), found by counting.
+	 *
+	 * @param codes code of each symbol
+	 * @return the sorted symbols
+	 */
+	private static int[] sortByCode(CodeTable codes) {
+		int[] symbols = codes.symbols();
+		if(codes.isCanonical()) {
+			int[] start = new int[CodeTable.MAX_CODE_LENGTH + 2];
+			for(int s : symbols) {
+				start[codes.getLength(s) + 1]++;
+			}
+			for(int length = 1; length < start.length; length++) {
+				start[length] += start[length - 1];
+			}
+			int[] sorted = new int[symbols.length];
+			for(int s : symbols) {
+				sorted[start[codes.getLength(s)]++] = s;
+			}
+			return sorted;
+		}
+
+		long[] keys = new long[symbols.length];
+		for(int i = 0; i < symbols.length; i++) {
+			int length = codes.getLength(symbols[i]);
+			keys[i] = length == 0 ? 0 : codes.getBits(symbols[i]) << (CodeTable.MAX_CODE_LENGTH - length);
+		}
+		Integer[] order = new Integer[symbols.length];
+		for(int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (a, b) -> {
+			int c = Long.compareUnsigned(keys[a], keys[b]);
+			return c != 0 ? c : codes.getLength(symbols[a]) - codes.getLength(symbols[b]);
+		});
+		int[] sorted = new int[symbols.length];
+		for(int i = 0; i < sorted.length; i++) {
+			sorted[i] = symbols[order[i]];
+		}
+		return sorted;
+	}
+}
@@ -0,0 +1,277 @@
+package project;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class compresses files of any kind, byte by byte, with Huffman codes. Input and
+ * output are mapped into memory with FileChannel.map, a window at a time, so files larger
+ * than the heap can be compressed and the data is never copied into Java arrays.
+ *
+ * A compressed file holds MAGIC, the number of bytes of the original file (a long), the
+ * header of the canonical code, the number of bits (a long) and the packed bits. Codes are
+ * limited to HuffmanBuilder.DEFLATE_MAX_LENGTH bits.
+ *
+ * @author fc59858 Madalena Machado
+ *
+ */
+public class HuffmanFiles {
+
+	/**
+	 * First bytes of every compressed file
+	 */
+	public static final int MAGIC = 0x48554642; // "HUFB"
+
+	private static final int WINDOW = 1 << 28;
+	private static final int SYMBOLS = 256;
+
+	/**
+	 * This method compresses a file: one pass over the mapped input counts the bytes and a
+	 * second one encodes them straight into the mapped output
+	 *
+	 * @param input  file to be compressed
+	 * @param output compressed file, created or replaced
+	 * @throws IOException if a file cannot be read or written
+	 */
+	public static void compress(Path input, Path output) throws IOException {
+		try(FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.READ, StandardOpenOption.WRITE,
+						StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long size = in.size();
+			long[] frequencies = new long[SYMBOLS];
+			for(long start = 0; start < size; start += WINDOW) {
+				MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW, size - start));
+				while(window.hasRemaining()) {
+					frequencies[window.get() & 0xFF]++;
+				}
+			}
+
+			CodeTable table = CodeTable.canonical(HuffmanBuilder.limitedCodeLengths(frequencies, HuffmanBuilder.DEFLATE_MAX_LENGTH));
+			long bitLength = HuffmanBuilder.totalBits(frequencies, lengths(table));
+			byte[] header = table.toHeader();
+			long total = Integer.BYTES + 2L * Long.BYTES + header.length + ((bitLength + 7) >>> 3);
+
+			MappedBitWriter bits = new MappedBitWriter(out, total);
+			bits.put(ByteBuffer.allocate(Integer.BYTES + Long.BYTES).putInt(MAGIC).putLong(size).array());
+			bits.put(header);
+			bits.put(ByteBuffer.allocate(Long.BYTES).putLong(bitLength).array());
+
+			long[] codes = new long[SYMBOLS];
+			int[] codeLengths = new int[SYMBOLS];
+			for(int b = 0; b < SYMBOLS; b++) {
+				if(table.contains(b)) {
+					codes[b] = table.getBits(b);
+					codeLengths[b] = table.getLength(b);
+				}
+			}
+			for(long start = 0; start < size; start += WINDOW) {
+				MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW, size - start));
+				while(window.hasRemaining()) {
+					int b = window.get() & 0xFF;
+					bits.write(codes[b], codeLengths[b]);
+				}
+			}
+			bits.finish();
+		}
+	}
+
+	/**
+	 * This method decompresses a file written by compress, decoding from the mapped input
+	 * straight into the mapped output
+	 *
+	 * @param input  compressed file
+	 * @param output decompressed file, created or replaced
+	 * @throws IOException if a file cannot be read or written, or the input is malformed
+	 */
+	public static void decompress(Path input, Path output) throws IOException {
+		try(FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.READ, StandardOpenOption.WRITE,
+						StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer first = in.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(WINDOW, in.size()));
+			if(first.remaining() < Integer.BYTES + Long.BYTES || first.getInt() != MAGIC) {
+				throw new IOException(input + " is not a compressed file");
+			}
+			long size = first.getLong();
+			CodeTable table = CodeTable.readHeader(new ByteBufferInputStream(first));
+			long bitLength = first.getLong();
+			if(size == 0) {
+				return;
+			}
+			MappedReader bits = new MappedReader(in, first, bitLength);
+			HuffmanDecoder decoder = new HuffmanDecoder(table);
+
+			try {
+				for(long start = 0; start < size; start += WINDOW) {
+					MappedByteBuffer window = out.map(FileChannel.MapMode.READ_WRITE, start, Math.min(WINDOW, size - start));
+					while(window.hasRemaining()) {
+						window.put((byte) decoder.decodeSymbol(bits));
+					}
+				}
+			} catch (IllegalArgumentException e) {
+				throw new IOException("corrupt file " + input + ": " + e.getMessage(), e);
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	/**
+	 * Returns the code length of each byte
+	 *
+	 * @param table code of each byte
+	 * @return the code lengths, indexed by byte, with 0 for bytes without a code
+	 */
+	private static int[] lengths(CodeTable table) {
+		int[] lengths = new int[SYMBOLS];
+		for(int b : table.symbols()) {
+			lengths[b] = table.getLength(b);
+		}
+		return lengths;
+	}
+
+	/**
+	 * This class writes bits into a file through mapped windows
+	 */
+	private static class MappedBitWriter {
+
+		private final FileChannel channel;
+		private final long size;
+		private long windowStart;
+		private MappedByteBuffer window;
+		private long accumulator;
+		private int pendingBits;
+
+		/**
+		 * This constructor maps the first window of the file
+		 *
+		 * @param channel file to be written
+		 * @param size    final size of the file
+		 * @throws IOException if the file cannot be mapped
+		 */
+		private MappedBitWriter(FileChannel channel, long size) throws IOException {
+			this.channel = channel;
+			this.size = size;
+			this.window = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.min(WINDOW, size));
+		}
+
+		/**
+		 * This method writes whole bytes
+		 *
+		 * @param bytes bytes to be written
+		 * @throws IOException if the file cannot be mapped
+		 * @requires no bits are pending
+		 */
+		private void put(byte[] bytes) throws IOException {
+			for(byte b : bytes) {
+				put(b);
+			}
+		}
+
+		/**
+		 * This method writes the lowest length bits of the given value
+		 *
+		 * @param bits   value holding the bits to be written
+		 * @param length number of bits to be written
+		 * @throws IOException if the file cannot be mapped
+		 * @requires {@code 0 <= length && length <= 56}
+		 */
+		private void write(long bits, int length) throws IOException {
+			accumulator = (accumulator << length) | (bits & ((1L << length) - 1));
+			pendingBits += length;
+			while(pendingBits >= 8) {
+				pendingBits -= 8;
+				put((byte) (accumulator >>> pendingBits));
+			}
+		}
+
+		/**
+		 * This method pads the last byte with zeros
+		 *
+		 * @throws IOException if the file cannot be mapped
+		 */
+		private void finish() throws IOException {
+			if(pendingBits > 0) {
+				write(0, 8 - pendingBits);
+			}
+		}
+
+		/**
+		 * This method writes a byte, mapping the next window when the current one is full
+		 *
+		 * @param b byte to be written
+		 * @throws IOException if the file cannot be mapped
+		 */
+		private void put(byte b) throws IOException {
+			if(!window.hasRemaining()) {
+				windowStart += window.capacity();
+				window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, Math.min(WINDOW, size - windowStart));
+			}
+			window.put(b);
+		}
+	}
+
+	/**
+	 * This class reads bits from a file through mapped windows
+	 */
+	private static class MappedReader extends BitReader {
+
+		private final FileChannel channel;
+		private long windowStart;
+
+		/**
+		 * This constructor creates a reader that starts at the current position of the first
+		 * window of the file
+		 *
+		 * @param channel   file to be read
+		 * @param first     first window of the file
+		 * @param bitLength number of valid bits
+		 */
+		private MappedReader(FileChannel channel, ByteBuffer first, long bitLength) {
+			super(first, bitLength);
+			this.channel = channel;
+		}
+
+		@Override
+		protected boolean fill() {
+			try {
+				long next = windowStart + source.capacity();
+				if(next >= channel.size()) {
+					return false;
+				}
+				windowStart = next;
+				source = channel.map(FileChannel.MapMode.READ_ONLY, next, Math.min(WINDOW, channel.size() - next));
+				return true;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * This class reads the header of the code from a mapped buffer
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		/**
+		 * This constructor creates a stream over the remaining bytes of the buffer
+		 *
+		 * @param buffer source of the bytes
+		 */
+		private ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+	}
+}
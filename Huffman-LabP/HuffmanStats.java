@@ -0,0 +1,238 @@
+package project;
+
+import java.util.function.Consumer;
+
+/**
+ * This class gathers the numbers of a table build and the encodes done with it: symbol
+ * counts, Shannon entropy against the bits per symbol the code achieves, size in and out,
+ * and the time spent counting, building and encoding. It is filled by the Huffman methods
+ * that take it, and handed to an optional listener after every encode, so the values can
+ * be pushed to a metrics system.
+ *
+ * Sizes in count every character as Character.BYTES bytes. Sizes out count the packed bits
+ * and the header of the table.
+ *
+ * @author fc59858 Madalena Machado
+ *
+ */
+public class HuffmanStats {
+
+	private final Consumer<HuffmanStats> listener;
+
+	private long corpusSymbols;
+	private int distinctSymbols;
+	private double entropy;
+	private double averageCodeLength;
+	private int maxDepth;
+	private int headerBytes;
+	private long countNanos;
+	private long buildNanos;
+
+	private long encodedSymbols;
+	private long encodedBits;
+	private long encodeNanos;
+
+	/**
+	 * This constructor creates empty statistics with no listener
+	 */
+	public HuffmanStats() {
+		this(null);
+	}
+
+	/**
+	 * This constructor creates empty statistics
+	 *
+	 * @param listener called with these statistics after every encode, or null
+	 */
+	public HuffmanStats(Consumer<HuffmanStats> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * This method records a table build
+	 *
+	 * @param frequencies number of times each character appears, indexed by character
+	 * @param table       code table built from the counts
+	 * @param countNanos  time spent counting the characters
+	 * @param buildNanos  time spent building the table
+	 */
+	void recordBuild(int[] frequencies, CodeTable table, long countNanos, long buildNanos) {
+		long total = 0;
+		int distinct = 0;
+		for(int f : frequencies) {
+			total += f;
+			if(f > 0) {
+				distinct++;
+			}
+		}
+		double h = 0;
+		double bits = 0;
+		for(int c = 0; c < frequencies.length; c++) {
+			if(frequencies[c] > 0) {
+				double p = (double) frequencies[c] / total;
+				h -= p * Math.log(p) / Math.log(2);
+				bits += p * table.getLength(c);
+			}
+		}
+		this.corpusSymbols = total;
+		this.distinctSymbols = distinct;
+		this.entropy = h;
+		this.averageCodeLength = bits;
+		this.maxDepth = table.maxLength();
+		this.headerBytes = table.toHeader().length;
+		this.countNanos = countNanos;
+		this.buildNanos = buildNanos;
+	}
+
+	/**
+	 * This method adds an encode to the statistics and calls the listener
+	 *
+	 * @param symbols number of characters encoded
+	 * @param bits    number of bits they were encoded into
+	 * @param nanos   time spent encoding
+	 */
+	void recordEncode(long symbols, long bits, long nanos) {
+		this.encodedSymbols += symbols;
+		this.encodedBits += bits;
+		this.encodeNanos += nanos;
+		if(listener != null) {
+			listener.accept(this);
+		}
+	}
+
+	/**
+	 * Returns the number of characters in the corpus the table was built from
+	 *
+	 * @return the number of characters counted
+	 */
+	public long getCorpusSymbols() {
+		return corpusSymbols;
+	}
+
+	/**
+	 * Returns the number of different characters in the corpus
+	 *
+	 * @return the number of characters with a code
+	 */
+	public int getDistinctSymbols() {
+		return distinctSymbols;
+	}
+
+	/**
+	 * Returns the Shannon entropy of the corpus, the least number of bits per character any
+	 * code of single characters could reach
+	 *
+	 * @return the entropy in bits per character
+	 */
+	public double getEntropy() {
+		return entropy;
+	}
+
+	/**
+	 * Returns the average code length over the corpus
+	 *
+	 * @return the bits per character the table gives the corpus
+	 */
+	public double getAverageCodeLength() {
+		return averageCodeLength;
+	}
+
+	/**
+	 * Returns the bits per character actually written by the encodes
+	 *
+	 * @return the encoded bits per character, or 0 if nothing was encoded
+	 */
+	public double getBitsPerSymbol() {
+		return encodedSymbols == 0 ? 0 : (double) encodedBits / encodedSymbols;
+	}
+
+	/**
+	 * Returns how close the code gets to the entropy
+	 *
+	 * @return the entropy divided by the average code length, 1 for a perfect code
+	 */
+	public double getEfficiency() {
+		return averageCodeLength == 0 ? 1 : entropy / averageCodeLength;
+	}
+
+	/**
+	 * Returns the length of the longest code, the depth of the tree
+	 *
+	 * @return the length of the longest code
+	 */
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	/**
+	 * Returns the number of characters encoded
+	 *
+	 * @return the number of characters encoded
+	 */
+	public long getEncodedSymbols() {
+		return encodedSymbols;
+	}
+
+	/**
+	 * Returns the size of the encoded text before compression
+	 *
+	 * @return the number of bytes in
+	 */
+	public long getBytesIn() {
+		return encodedSymbols * Character.BYTES;
+	}
+
+	/**
+	 * Returns the size of the compressed text with the header of the table
+	 *
+	 * @return the number of bytes out
+	 */
+	public long getBytesOut() {
+		return headerBytes + ((encodedBits + 7) >>> 3);
+	}
+
+	/**
+	 * Returns the compression ratio
+	 *
+	 * @return bytes in divided by bytes out
+	 */
+	public double getCompressionRatio() {
+		long out = getBytesOut();
+		return out == 0 ? 0 : (double) getBytesIn() / out;
+	}
+
+	/**
+	 * Returns the time spent counting the characters of the corpus
+	 *
+	 * @return the time in nanoseconds
+	 */
+	public long getCountNanos() {
+		return countNanos;
+	}
+
+	/**
+	 * Returns the time spent building the table
+	 *
+	 * @return the time in nanoseconds
+	 */
+	public long getBuildNanos() {
+		return buildNanos;
+	}
+
+	/**
+	 * Returns the time spent encoding
+	 *
+	 * @return the time in nanoseconds
+	 */
+	public long getEncodeNanos() {
+		return encodeNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("symbols=%d distinct=%d entropy=%.4f avgLength=%.4f bitsPerSymbol=%.4f maxDepth=%d "
+				+ "bytesIn=%d bytesOut=%d ratio=%.3f countNs=%d buildNs=%d encodeNs=%d", corpusSymbols,
+				distinctSymbols, entropy, averageCodeLength, getBitsPerSymbol(), maxDepth, getBytesIn(),
+				getBytesOut(), getCompressionRatio(), countNanos, buildNanos, encodeNanos);
+	}
+}
@@ -0,0 +1,297 @@
+package project;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * This class compresses text of any size with Huffman codes, reading and writing it in
+ * chunks so that it never has to fit in memory as a String.
+ *
+ * The compressed stream starts with MAGIC and holds a sequence of blocks, each with its
+ * own canonical code. A block is the number of characters it holds (a long), the code
+ * header, the number of bits (a long) and the packed bits. A count of zero ends the stream.
+ *
+ * @author fc59858 Madalena Machado
+ *
+ */
+public class HuffmanStream {
+
+	/**
+	 * First bytes of every compressed stream
+	 */
+	public static final int MAGIC = 0x48554631; // "HUF1"
+
+	/**
+	 * Default number of characters of a block in block mode
+	 */
+	public static final int DEFAULT_BLOCK_CHARS = 1 << 22;
+
+	private static final int CHUNK_CHARS = 1 << 16;
+	private static final int ALPHABET = Character.MAX_VALUE + 1;
+
+	/**
+	 * This method counts how many times each character appears in the text read
+	 *
+	 * @param in source of text
+	 * @return the number of times each character appears, indexed by character
+	 * @throws IOException if the reader fails
+	 */
+	public static long[] countFrequencies(Reader in) throws IOException {
+		long[] frequencies = new long[ALPHABET];
+		char[] chunk = new char[CHUNK_CHARS];
+		int n;
+		while((n = in.read(chunk)) != -1) {
+			for(int i = 0; i < n; i++) {
+				frequencies[chunk[i]]++;
+			}
+		}
+		return frequencies;
+	}
+
+	/**
+	 * This method compresses a text file in two passes: the first counts the characters and
+	 * the second encodes them with one code for the whole file
+	 *
+	 * @param input   text file to be compressed
+	 * @param charset encoding of the text file
+	 * @param out     destination stream
+	 * @throws IOException if a stream fails or the file changes between the passes
+	 */
+	public static void compress(Path input, Charset charset, OutputStream out) throws IOException {
+		long[] frequencies;
+		try(Reader in = Files.newBufferedReader(input, charset)) {
+			frequencies = countFrequencies(in);
+		}
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		long count = total(frequencies);
+		if(count > 0) {
+			CodeTable table = Huffman.canonicalTable(frequencies);
+			writeBlockHeader(data, count, table, frequencies);
+			try(Reader in = Files.newBufferedReader(input, charset)) {
+				char[] chunk = new char[CHUNK_CHARS];
+				BitWriter bits = new BitWriter(data);
+				long left = count;
+				int n;
+				while((n = in.read(chunk)) != -1) {
+					left -= n;
+					if(left < 0) {
+						throw new IOException(input + " changed between the two passes");
+					}
+					encode(chunk, n, table, bits);
+				}
+				bits.flush();
+				if(left != 0) {
+					throw new IOException(input + " changed between the two passes");
+				}
+			}
+		}
+		data.writeLong(0);
+		data.flush();
+	}
+
+	/**
+	 * This method compresses text in one pass, in blocks of at most blockChars characters,
+	 * each with a code built from its own characters. Memory use depends only on blockChars.
+	 *
+	 * @param in         source of text
+	 * @param out        destination stream
+	 * @param blockChars maximum number of characters in a block
+	 * @throws IOException if a stream fails
+	 * @requires {@code blockChars > 0}
+	 */
+	public static void compress(Reader in, OutputStream out, int blockChars) throws IOException {
+		DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		char[] block = new char[blockChars];
+		long[] frequencies = new long[ALPHABET];
+		BitWriter bits = new BitWriter(data);
+		int n;
+		while((n = fill(in, block)) > 0) {
+			Arrays.fill(frequencies, 0);
+			for(int i = 0; i < n; i++) {
+				frequencies[block[i]]++;
+			}
+			CodeTable table = Huffman.canonicalTable(frequencies);
+			writeBlockHeader(data, n, table, frequencies);
+			encode(block, n, table, bits);
+			bits.flush();
+		}
+		data.writeLong(0);
+		data.flush();
+	}
+
+	/**
+	 * This method compresses text in one pass, in blocks of DEFAULT_BLOCK_CHARS characters
+	 *
+	 * @param in  source of text
+	 * @param out destination stream
+	 * @throws IOException if a stream fails
+	 */
+	public static void compress(Reader in, OutputStream out) throws IOException {
+		compress(in, out, DEFAULT_BLOCK_CHARS);
+	}
+
+	/**
+	 * This method decompresses a stream written by compress, block by block
+	 *
+	 * @param in  compressed stream
+	 * @param out destination of the text
+	 * @throws IOException if a stream fails or the compressed stream is malformed
+	 */
+	public static void decompress(InputStream in, Writer out) throws IOException {
+		DataInputStream data = new DataInputStream(in);
+		if(data.readInt() != MAGIC) {
+			throw new IOException("not a Huffman stream");
+		}
+		char[] chunk = new char[CHUNK_CHARS];
+		long count;
+		while((count = data.readLong()) > 0) {
+			HuffmanDecoder decoder = new HuffmanDecoder(CodeTable.readHeader(data));
+			long bitLength = data.readLong();
+			BitReader bits = new StreamBitReader(data, (bitLength + 7) >>> 3, bitLength);
+			try {
+				while(count > 0) {
+					int n = (int) Math.min(chunk.length, count);
+					for(int i = 0; i < n; i++) {
+						chunk[i] = (char) decoder.decodeSymbol(bits);
+					}
+					out.write(chunk, 0, n);
+					count -= n;
+				}
+			} catch (IllegalArgumentException e) {
+				throw new IOException("corrupt block: " + e.getMessage(), e);
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			if(bits.remaining() != 0) {
+				throw new IOException("corrupt block: " + bits.remaining() + " bits left over");
+			}
+		}
+		if(count < 0) {
+			throw new IOException("corrupt stream: negative block size");
+		}
+		out.flush();
+	}
+
+	/**
+	 * This method writes what comes before the bits of a block
+	 *
+	 * @param data        destination stream
+	 * @param count       number of characters in the block
+	 * @param table       code of the block
+	 * @param frequencies number of times each character appears in the block
+	 * @throws IOException if the stream fails
+	 */
+	private static void writeBlockHeader(DataOutputStream data, long count, CodeTable table, long[] frequencies) throws IOException {
+		long bitLength = 0;
+		for(int c : table.symbols()) {
+			bitLength += frequencies[c] * table.getLength(c);
+		}
+		data.writeLong(count);
+		table.writeHeader(data);
+		data.writeLong(bitLength);
+	}
+
+	/**
+	 * This method writes the codes of the first n characters of the chunk
+	 *
+	 * @param chunk characters to be encoded
+	 * @param n     number of characters to be encoded
+	 * @param table code of each character
+	 * @param bits  destination of the bits
+	 * @throws IOException if the stream fails or a character has no code
+	 */
+	private static void encode(char[] chunk, int n, CodeTable table, BitWriter bits) throws IOException {
+		for(int i = 0; i < n; i++) {
+			int length = table.getLength(chunk[i]);
+			if(length == CodeTable.ABSENT) {
+				throw new IOException("character " + (int) chunk[i] + " was not counted");
+			}
+			bits.write(table.getBits(chunk[i]), length);
+		}
+	}
+
+	/**
+	 * This method reads characters until the array is full or the text ends
+	 *
+	 * @param in    source of text
+	 * @param block destination array
+	 * @return the number of characters read
+	 * @throws IOException if the reader fails
+	 */
+	private static int fill(Reader in, char[] block) throws IOException {
+		int n = 0;
+		int r;
+		while(n < block.length && (r = in.read(block, n, block.length - n)) != -1) {
+			n += r;
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the sum of the counts
+	 *
+	 * @param frequencies number of times each character appears
+	 * @return the number of characters
+	 */
+	private static long total(long[] frequencies) {
+		long total = 0;
+		for(long f : frequencies) {
+			total += f;
+		}
+		return total;
+	}
+
+	/**
+	 * This class reads the bits of one block from a stream, without reading past its end
+	 */
+	private static class StreamBitReader extends BitReader {
+
+		private final InputStream in;
+		private long bytesLeft;
+
+		/**
+		 * This constructor creates a reader for the next bytes of the stream
+		 *
+		 * @param in        source stream
+		 * @param bytes     number of bytes of the block
+		 * @param bitLength number of valid bits of the block
+		 */
+		private StreamBitReader(InputStream in, long bytes, long bitLength) {
+			super(new byte[1 << 16], 0, 0, bitLength);
+			this.in = in;
+			this.bytesLeft = bytes;
+		}
+
+		@Override
+		protected boolean fill() {
+			if(bytesLeft == 0) {
+				return false;
+			}
+			try {
+				int n = in.read(buffer, 0, (int) Math.min(buffer.length, bytesLeft));
+				if(n < 0) {
+					throw new EOFException("stream ends inside a block");
+				}
+				bytesLeft -= n;
+				position = 0;
+				limit = n;
+				return n > 0;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * This class runs the Huffman counting and encoding loops on several threads. The corpus
+ * is split into segments: counts of each segment are merged into one table, and the bits
+ * of each segment are joined in order, so the results are the same as the ones given by
+ * Huffman.countFrequencies and Huffman.encodeBits.
+ *
+ * @author fc59858 Madalena Machado
+ *
+ */
+public class ParallelHuffman {
+
+	/**
+	 * Smallest number of characters given to a single task
+	 */
+	public static final int MIN_SEGMENT = 1 << 16;
+
+	/**
+	 * This method counts how many times each character appears in the corpus, using the
+	 * common pool
+	 *
+	 * @param corpus text message
+	 * @return the number of times each character appears, indexed by character
+	 */
+	public static int[] countFrequencies(CharSequence corpus) {
+		return countFrequencies(corpus, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * This method counts how many times each character appears in the corpus
+	 *
+	 * @param corpus text message
+	 * @param pool   pool that runs the tasks
+	 * @return the number of times each character appears, indexed by character
+	 */
+	public static int[] countFrequencies(CharSequence corpus, ForkJoinPool pool) {
+		int segment = segmentSize(corpus.length(), pool);
+		return pool.invoke(new CountTask(corpus, 0, corpus.length(), segment));
+	}
+
+	/**
+	 * This method encodes the message into packed bits, using the common pool
+	 *
+	 * @param message text to be coded
+	 * @param table code of each character from the text
+	 * @return the encoded message, bit for bit the same as Huffman.encodeBits
+	 * @throws IllegalArgumentException if a character of the message has no code
+	 */
+	public static BitBuffer encodeBits(CharSequence message, CodeTable table) {
+		return encodeBits(message, table, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * This method encodes the message into packed bits. Each segment is encoded by its own
+	 * task into its own buffer, and the buffers are joined bit by bit in order.
+	 *
+	 * @param message text to be coded
+	 * @param table code of each character from the text
+	 * @param pool pool that runs the tasks
+	 * @return the encoded message, bit for bit the same as Huffman.encodeBits
+	 * @throws IllegalArgumentException if a character of the message has no code
+	 */
+	public static BitBuffer encodeBits(CharSequence message, CodeTable table, ForkJoinPool pool) {
+		int segment = segmentSize(message.length(), pool);
+		List<EncodeTask> tasks = new ArrayList<>();
+		for(int from = 0; from < message.length(); from += segment) {
+			tasks.add(new EncodeTask(message, from, Math.min(message.length(), from + segment), table));
+		}
+		if(tasks.size() <= 1) {
+			return Huffman.encodeBits(message, table);
+		}
+		for(EncodeTask task : tasks) {
+			pool.execute(task);
+		}
+
+		BitBuffer out = tasks.get(0).join();
+		for(int i = 1; i < tasks.size(); i++) {
+			out.append(tasks.get(i).join());
+		}
+		return out;
+	}
+
+	/**
+	 * Returns the number of characters of each segment, so that there are a few segments per
+	 * thread but none smaller than MIN_SEGMENT
+	 *
+	 * @param length number of characters
+	 * @param pool   pool that runs the tasks
+	 * @return the segment size
+	 */
+	private static int segmentSize(int length, ForkJoinPool pool) {
+		int segments = 4 * pool.getParallelism();
+		return Math.max(MIN_SEGMENT, (int) (((long) length + segments - 1) / segments));
+	}
+
+	/**
+	 * This class counts the characters of a range, splitting it in half while it is larger
+	 * than a segment
+	 */
+	private static class CountTask extends RecursiveTask<int[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final CharSequence corpus;
+		private final int from;
+		private final int to;
+		private final int segment;
+
+		/**
+		 * This constructor creates a task for the given range
+		 *
+		 * @param corpus  text message
+		 * @param from    first position of the range
+		 * @param to      position after the last one of the range
+		 * @param segment largest range counted without splitting
+		 */
+		private CountTask(CharSequence corpus, int from, int to, int segment) {
+			this.corpus = corpus;
+			this.from = from;
+			this.to = to;
+			this.segment = segment;
+		}
+
+		@Override
+		protected int[] compute() {
+			if(to - from <= segment) {
+				return Huffman.countFrequencies(new Segment(corpus, from, to));
+			}
+			int middle = (from + to) >>> 1;
+			CountTask left = new CountTask(corpus, from, middle, segment);
+			left.fork();
+			int[] right = new CountTask(corpus, middle, to, segment).compute();
+			return merge(left.join(), right);
+		}
+
+		/**
+		 * This method adds two tables, reusing the larger one
+		 *
+		 * @param a counts of one range
+		 * @param b counts of another range
+		 * @return the sum of the counts
+		 */
+		private static int[] merge(int[] a, int[] b) {
+			int[] sum = a.length >= b.length ? a : b;
+			int[] other = sum == a ? b : a;
+			for(int c = 0; c < other.length; c++) {
+				sum[c] += other[c];
+			}
+			return sum;
+		}
+	}
+
+	/**
+	 * This class encodes the characters of a range into its own buffer
+	 */
+	private static class EncodeTask extends RecursiveTask<BitBuffer> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final CharSequence message;
+		private final int from;
+		private final int to;
+		private final CodeTable table;
+
+		/**
+		 * This constructor creates a task for the given range
+		 *
+		 * @param message text to be coded
+		 * @param from    first position of the range
+		 * @param to      position after the last one of the range
+		 * @param table   code of each character
+		 */
+		private EncodeTask(CharSequence message, int from, int to, CodeTable table) {
+			this.message = message;
+			this.from = from;
+			this.to = to;
+			this.table = table;
+		}
+
+		@Override
+		protected BitBuffer compute() {
+			try {
+				return Huffman.encodeBits(new Segment(message, from, to), table);
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException(e.getMessage() + " of the segment starting at " + from, e);
+			}
+		}
+	}
+
+	/**
+	 * This class is a view of a range of a text, without copying it
+	 */
+	private static class Segment implements CharSequence {
+
+		private final CharSequence text;
+		private final int from;
+		private final int to;
+
+		/**
+		 * This constructor creates a view of the given range
+		 *
+		 * @param text text seen
+		 * @param from first position of the range
+		 * @param to   position after the last one of the range
+		 */
+		private Segment(CharSequence text, int from, int to) {
+			this.text = text;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public int length() {
+			return to - from;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return text.charAt(from + index);
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return new Segment(text, from + start, from + end);
+		}
+
+		@Override
+		public String toString() {
+			return text.subSequence(from, to).toString();
+		}
+	}
+}
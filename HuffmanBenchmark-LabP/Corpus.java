@@ -0,0 +1,101 @@
+package project;
+
+import java.util.Random;
+
+/**
+ * Shapes of the text given to the Huffman benchmarks. Each shape generates the same text for
+ * the same size and seed.
+ *
+ * @author fc59858 Madalena Machado
+ *
+ */
+public enum Corpus {
+
+	/**
+	 * Lowercase words separated by spaces and some punctuation
+	 */
+	ASCII {
+		@Override
+		String generate(int size, Random random) {
+			StringBuilder sb = new StringBuilder(size);
+			while(sb.length() < size) {
+				int word = 1 + random.nextInt(9);
+				for(int i = 0; i < word && sb.length() < size; i++) {
+					// letters near the start of the alphabet are more common, as in real text
+					sb.append((char) ('a' + (int) (Math.abs(random.nextGaussian()) * 6) % 26));
+				}
+				if(sb.length() < size) {
+					sb.append(random.nextInt(12) == 0 ? '.' : ' ');
+				}
+			}
+			return sb.toString();
+		}
+	},
+
+	/**
+	 * 64 symbols where each one is about twice as common as the next, which gives deep codes
+	 */
+	SKEWED {
+		@Override
+		String generate(int size, Random random) {
+			char[] text = new char[size];
+			for(int i = 0; i < size; i++) {
+				int symbol = Math.min(63, Long.numberOfTrailingZeros(random.nextLong() | Long.MIN_VALUE));
+				text[i] = (char) ('0' + symbol);
+			}
+			return new String(text);
+		}
+	},
+
+	/**
+	 * 256 symbols, all equally common, which gives codes of the same length
+	 */
+	UNIFORM {
+		@Override
+		String generate(int size, Random random) {
+			char[] text = new char[size];
+			for(int i = 0; i < size; i++) {
+				text[i] = (char) random.nextInt(256);
+			}
+			return new String(text);
+		}
+	},
+
+	/**
+	 * Any char of the Basic Multilingual Plane outside the surrogate range
+	 */
+	UNICODE {
+		@Override
+		String generate(int size, Random random) {
+			char[] text = new char[size];
+			for(int i = 0; i < size; i++) {
+				char c;
+				do {
+					c = (char) random.nextInt(Character.MAX_VALUE + 1);
+				} while(Character.isSurrogate(c));
+				text[i] = c;
+			}
+			return new String(text);
+		}
+	};
+
+	/**
+	 * Returns text of the given size with this shape
+	 *
+	 * @param size number of characters
+	 * @param seed seed of the random generator
+	 * @return the generated text
+	 */
+	public String generate(int size, long seed) {
+		return generate(size, new Random(seed));
+	}
+
+	/**
+	 * Returns text of the given size with this shape
+	 *
+	 * @param size   number of characters
+	 * @param random source of random numbers
+	 * @return the generated text
+	 */
+	abstract String generate(int size, Random random);
+}
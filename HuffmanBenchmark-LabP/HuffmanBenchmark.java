@@ -0,0 +1,256 @@
+package project;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * This class measures the Huffman codec for several corpus sizes and shapes. Each case is
+ * run for a few warm-up rounds, so the JIT compiles it, and then timed over several rounds.
+ * For each case it prints the time per operation, the characters processed per second and
+ * the bytes allocated per operation and per second by the benchmark thread (the work done
+ * by pool threads in the parallel cases is timed but its allocation is not counted).
+ *
+ * The benchmarks live apart from the codec and are compiled together with the sources of
+ * Huffman-LabP. Run with {@code java -Xmx4g project.HuffmanBenchmark [--sizes 1K,1M,100M]
+ * [--shapes ASCII,SKEWED,UNIFORM,UNICODE] [--ops encode,decode]}. An operation is selected
+ * when its name starts with one of the given prefixes.
+ *
+ * @author fc59858 Madalena Machado
+ *
+ */
+public class HuffmanBenchmark {
+
+	private static final String DEFAULT_SIZES = "1K,64K,1M,16M,100M";
+	private static final int WARMUP_ROUNDS = 3;
+	private static final int MEASURED_ROUNDS = 5;
+	private static final long MIN_ROUND_NANOS = 200_000_000L;
+	private static final long SEED = 42;
+
+	// results are stored here so the JIT cannot drop the work that produced them
+	private static volatile Object sink;
+
+	private static final com.sun.management.ThreadMXBean THREADS = threadBean();
+
+	/**
+	 * Runs every selected operation for every selected size and shape
+	 *
+	 * @param args options, as described in the class comment
+	 */
+	public static void main(String[] args) {
+		Map<String, String> options = options(args);
+		List<Integer> sizes = new ArrayList<>();
+		for(String size : options.getOrDefault("sizes", DEFAULT_SIZES).split(",")) {
+			sizes.add(parseSize(size));
+		}
+		List<Corpus> shapes = new ArrayList<>();
+		for(String shape : options.getOrDefault("shapes", "ASCII,SKEWED,UNIFORM,UNICODE").split(",")) {
+			shapes.add(Corpus.valueOf(shape.trim().toUpperCase()));
+		}
+		String[] ops = options.getOrDefault("ops", "").split(",");
+
+		System.out.printf("%-8s %10s %-22s %14s %12s %12s %14s%n",
+				"shape", "chars", "operation", "us/op", "Mchars/s", "alloc MB/s", "alloc B/op");
+		for(Corpus shape : shapes) {
+			for(int size : sizes) {
+				Fixture fixture = new Fixture(shape.generate(size, SEED));
+				for(Map.Entry<String, Function<Fixture, Object>> op : operations().entrySet()) {
+					if(selected(op.getKey(), ops)) {
+						Result result = run(() -> sink = op.getValue().apply(fixture));
+						System.out.printf("%-8s %10d %-22s %14.1f %12.1f %12.1f %14.0f%n",
+								shape, size, op.getKey(), result.nanosPerOp / 1e3,
+								size / (result.nanosPerOp / 1e3), result.allocatedPerOp / (result.nanosPerOp / 1e3),
+								result.allocatedPerOp);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the operations measured, by name. Names are grouped by the part of the codec
+	 * they exercise: counting, tree build, code extraction, encode and decode.
+	 *
+	 * @return the operations, in the order they are run
+	 */
+	private static Map<String, Function<Fixture, Object>> operations() {
+		Map<String, Function<Fixture, Object>> ops = new LinkedHashMap<>();
+		ops.put("count.hashmap", f -> Huffman.frequencyTable(f.corpus));
+		ops.put("count.array", f -> Huffman.countFrequencies(f.corpus));
+		ops.put("count.parallel", f -> ParallelHuffman.countFrequencies(f.corpus));
+		ops.put("build.canonical", f -> Huffman.canonicalTable(f.frequencies));
+		ops.put("build.getCodes", f -> Huffman.getCodes(f.corpus));
+		ops.put("codes.toCodes", f -> f.table.toCodes());
+		ops.put("codes.codesToString", f -> Huffman.codesToString(f.codes));
+		ops.put("encode.string", f -> Huffman.encode(f.corpus, f.codes));
+		ops.put("encode.bits", f -> Huffman.encodeBits(f.corpus, f.table));
+		ops.put("encode.parallel", f -> ParallelHuffman.encodeBits(f.corpus, f.table));
+		ops.put("decode.build", f -> new HuffmanDecoder(f.table));
+		ops.put("decode.table", f -> f.decoder.decode(f.bits));
+		return ops;
+	}
+
+	/**
+	 * This method runs a case and measures it
+	 *
+	 * @param body one operation
+	 * @return the average time and allocation of an operation
+	 */
+	static Result run(Runnable body) {
+		for(int round = 0; round < WARMUP_ROUNDS; round++) {
+			round(body);
+		}
+		Result total = new Result(0, 0);
+		for(int round = 0; round < MEASURED_ROUNDS; round++) {
+			Result result = round(body);
+			total = new Result(total.nanosPerOp + result.nanosPerOp, total.allocatedPerOp + result.allocatedPerOp);
+		}
+		return new Result(total.nanosPerOp / MEASURED_ROUNDS, total.allocatedPerOp / MEASURED_ROUNDS);
+	}
+
+	/**
+	 * This method repeats an operation for at least MIN_ROUND_NANOS
+	 *
+	 * @param body one operation
+	 * @return the average time and allocation of an operation
+	 */
+	private static Result round(Runnable body) {
+		long ops = 0;
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		long elapsed;
+		do {
+			body.run();
+			ops++;
+			elapsed = System.nanoTime() - start;
+		} while(elapsed < MIN_ROUND_NANOS);
+		allocated = allocatedBytes() - allocated;
+		return new Result((double) elapsed / ops, (double) allocated / ops);
+	}
+
+	/**
+	 * Returns the number of bytes allocated so far by the current thread
+	 *
+	 * @return the bytes allocated, or 0 if the JVM does not tell
+	 */
+	private static long allocatedBytes() {
+		return THREADS == null ? 0 : THREADS.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	/**
+	 * Returns the thread bean that reports allocation, if the JVM has one
+	 *
+	 * @return the thread bean, or null
+	 */
+	private static com.sun.management.ThreadMXBean threadBean() {
+		try {
+			com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			bean.setThreadAllocatedMemoryEnabled(true);
+			return bean;
+		} catch (ClassCastException | UnsupportedOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Verifies if an operation was selected
+	 *
+	 * @param name     name of the operation
+	 * @param prefixes selected prefixes, where an empty one selects everything
+	 * @return true if the operation was selected and false otherwise
+	 */
+	private static boolean selected(String name, String[] prefixes) {
+		for(String prefix : prefixes) {
+			if(name.startsWith(prefix.trim())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the options given as "--name value" pairs
+	 *
+	 * @param args command line arguments
+	 * @return the value of each option, by name
+	 */
+	private static Map<String, String> options(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for(int i = 0; i + 1 < args.length; i += 2) {
+			if(!args[i].startsWith("--")) {
+				throw new IllegalArgumentException("unexpected argument " + args[i] + " in " + Arrays.toString(args));
+			}
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		return options;
+	}
+
+	/**
+	 * Returns a size given as a number with an optional K or M suffix
+	 *
+	 * @param size size as text
+	 * @return the size in characters
+	 */
+	private static int parseSize(String size) {
+		String s = size.trim().toUpperCase();
+		if(s.endsWith("K")) {
+			return Integer.parseInt(s.substring(0, s.length() - 1)) << 10;
+		}
+		if(s.endsWith("M")) {
+			return Integer.parseInt(s.substring(0, s.length() - 1)) << 20;
+		}
+		return Integer.parseInt(s);
+	}
+
+	/**
+	 * This class holds the inputs of the operations, computed once per corpus
+	 */
+	private static class Fixture {
+
+		private final String corpus;
+		private final int[] frequencies;
+		private final CodeTable table;
+		private final HashMap<Character, String> codes;
+		private final BitBuffer bits;
+		private final HuffmanDecoder decoder;
+
+		/**
+		 * This constructor prepares the inputs for the given corpus
+		 *
+		 * @param corpus text message
+		 */
+		private Fixture(String corpus) {
+			this.corpus = corpus;
+			this.frequencies = Huffman.countFrequencies(corpus);
+			this.table = Huffman.canonicalTable(frequencies);
+			this.codes = table.toCodes();
+			this.bits = Huffman.encodeBits(corpus, table);
+			this.decoder = new HuffmanDecoder(table);
+		}
+	}
+
+	/**
+	 * This class holds the average time and allocation of an operation
+	 */
+	static class Result {
+
+		private final double nanosPerOp;
+		private final double allocatedPerOp;
+
+		/**
+		 * This constructor creates a result
+		 *
+		 * @param nanosPerOp     average time of an operation, in nanoseconds
+		 * @param allocatedPerOp average bytes allocated by an operation
+		 */
+		Result(double nanosPerOp, double allocatedPerOp) {
+			this.nanosPerOp = nanosPerOp;
+			this.allocatedPerOp = allocatedPerOp;
+		}
+	}
+}